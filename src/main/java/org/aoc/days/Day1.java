@@ -1,25 +1,45 @@
 package org.aoc.days;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 public class Day1 {
-    private final List<Integer> left = new ArrayList<>();
-    private final List<Integer> right = new ArrayList<>();
+    // Value ranges up to this size are sorted with a counting sort
+    private static final long COUNTING_SORT_MAX_RANGE = 1 << 20;
+    // Above this many elements we hand the array to Arrays.parallelSort
+    private static final int PARALLEL_SORT_THRESHOLD = 1 << 21;
+    // Below this many elements radix passes aren't worth the scratch buffer
+    private static final int SMALL_SORT_THRESHOLD = 64;
 
-    public int runPart(int part) {
+    private final int[] left;
+    private final int[] right;
+    private final int size;
+
+    public long runPart(int part) {
         switch (part) {
             case 1:
-                part1();
-                break;
+                return part1();
             case 2:
-                part2();
-                break;
+                return part2();
             default:
                 System.out.println("Invalid part number.");
 
@@ -29,50 +49,844 @@ public class Day1 {
     }
 
     public Day1(String filePath) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.trim().split("\\s+"); // Split by whitespace
-                if (parts.length == 2) {
-                    left.add(Integer.parseInt(parts[0]));
-                    right.add(Integer.parseInt(parts[1]));
-                }
+        PairParser.Columns columns = PairParser.parse(Paths.get(filePath));
+        left = columns.left;
+        right = columns.right;
+        size = columns.size;
+
+        // Sort the lists
+        sort(left, size);
+        sort(right, size);
+    }
+
+    // =============================
+    // SORTING
+    // =============================
+    // Picks a sort based on the observed values: counting sort when the IDs fit in a
+    // small range, parallelSort for very large arrays, LSD radix sort otherwise.
+
+    static void sort(int[] values, int length) {
+        sort(values, length, COUNTING_SORT_MAX_RANGE);
+    }
+
+    // countingRange caps the counts array, for callers that must bound the sort's scratch
+    static void sort(int[] values, int length, long countingRange) {
+        if (length < SMALL_SORT_THRESHOLD) {
+            Arrays.sort(values, 0, length);
+            return;
+        }
+
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+
+        long range = (long) max - min + 1;
+        if (range <= countingRange) {
+            countingSort(values, length, min, (int) range);
+        } else if (length >= PARALLEL_SORT_THRESHOLD) {
+            Arrays.parallelSort(values, 0, length);
+        } else {
+            radixSort(values, length, min, max);
+        }
+    }
+
+    private static void countingSort(int[] values, int length, int min, int range) {
+        int[] counts = new int[range];
+        for (int i = 0; i < length; i++) {
+            counts[values[i] - min]++;
+        }
+
+        int pos = 0;
+        for (int offset = 0; offset < range; offset++) {
+            int value = min + offset;
+            for (int c = counts[offset]; c > 0; c--) {
+                values[pos++] = value;
             }
         }
-        // Sort the lists
-        left.sort((o1, o2) -> o2 - o1);
-        right.sort((o1, o2) -> o2 - o1);
     }
 
+    private static void radixSort(int[] values, int length, int min, int max) {
+        // Keys are (value - min) read as unsigned, so negatives need no special casing
+        int maxKey = max - min;
+        int[] buffer = new int[length];
+        int[] src = values;
+        int[] dst = buffer;
+        int[] counts = new int[256];
+
+        for (int shift = 0; shift < 32 && (maxKey >>> shift) != 0; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < length; i++) {
+                counts[((src[i] - min) >>> shift) & 0xFF]++;
+            }
+
+            int total = 0;
+            for (int b = 0; b < 256; b++) {
+                int c = counts[b];
+                counts[b] = total;
+                total += c;
+            }
+
+            for (int i = 0; i < length; i++) {
+                int v = src[i];
+                dst[counts[((v - min) >>> shift) & 0xFF]++] = v;
+            }
 
+            int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+
+        if (src != values) {
+            System.arraycopy(src, 0, values, 0, length);
+        }
+    }
 
-    public int part1() {
-        int totalDifference = 0;
+    public long part1() {
+        long totalDifference = 0;
 
-        for (int i = 0; i < left.size(); i++) {
-            totalDifference += Math.abs(left.get(i) - right.get(i));
+        for (int i = 0; i < size; i++) {
+            totalDifference += Math.abs((long) left[i] - right[i]);
         }
 
         System.out.println("Total Difference: " + totalDifference + "\n");
         return totalDifference;
     }
 
-    public int part2() {
-        Map<Integer, Integer> leftmap = new HashMap<>();
-        Map<Integer, Integer> rightmap = new HashMap<>();
+    public long part2() {
+        long res = similarityScore(left, right, size);
 
-        for(int i = 0; i < left.size(); i++) {
-            leftmap.put(left.get(i), leftmap.getOrDefault(left.get(i), 0) + 1);
-            rightmap.put(right.get(i), rightmap.getOrDefault(right.get(i), 0) + 1);
-        }
+        System.out.println("Similarity Score  : " + res + "\n");
+        return res;
+    }
 
-        var res = 0;
+    // Merge-join over the two sorted columns: each value's contribution is
+    // value * (run length on the left) * (run length on the right).
+    static long similarityScore(int[] sortedLeft, int[] sortedRight, int length) {
+        long res = 0;
+        int i = 0;
+        int j = 0;
 
-        for(Map.Entry<Integer, Integer> entry : leftmap.entrySet()) {
-            res += entry.getKey() * entry.getValue() * rightmap.getOrDefault(entry.getKey(), 0);
+        while (i < length && j < length) {
+            int l = sortedLeft[i];
+            int r = sortedRight[j];
+
+            if (l < r) {
+                i++;
+            } else if (l > r) {
+                j++;
+            } else {
+                int leftRun = 0;
+                while (i < length && sortedLeft[i] == l) {
+                    i++;
+                    leftRun++;
+                }
+                int rightRun = 0;
+                while (j < length && sortedRight[j] == l) {
+                    j++;
+                    rightRun++;
+                }
+                res += (long) l * leftRun * rightRun;
+            }
         }
 
-        System.out.println("Similarity Score  : " + res + "\n");
         return res;
     }
+
+    public Incremental toIncremental() {
+        Incremental incremental = new Incremental();
+        for (int i = 0; i < size; i++) {
+            incremental.add(left[i], right[i]);
+        }
+        return incremental;
+    }
+
+    // =============================
+    // PARSING
+    // =============================
+    // Memory-maps the input, cuts it into newline-aligned chunks and parses each chunk
+    // straight from bytes on the common fork/join pool. Chunk results are concatenated
+    // in file order, so the columns come out exactly as a line-by-line read would.
+
+    static class PairParser extends RecursiveTask<PairParser.Columns> {
+        private static final long CHUNK_SIZE = 8L << 20;
+        // A token that is not a number, out of reach of any saturated value
+        private static final long MALFORMED = Long.MIN_VALUE;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        private PairParser(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        static Columns parse(Path path) throws IOException {
+            return parse(path, CHUNK_SIZE);
+        }
+
+        static Columns parse(Path path, long chunkSize) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long[] bounds = chunkBounds(channel, chunkSize);
+
+                List<PairParser> tasks = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.length; i++) {
+                    tasks.add(new PairParser(channel, bounds[i], bounds[i + 1]));
+                }
+
+                try {
+                    if (tasks.size() == 1) {
+                        return tasks.get(0).compute();
+                    }
+                    ForkJoinTask.invokeAll(tasks);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                List<Columns> parts = new ArrayList<>();
+                for (PairParser task : tasks) {
+                    parts.add(task.join());
+                }
+                return Columns.concat(parts);
+            }
+        }
+
+        // Nominal boundaries every CHUNK_SIZE bytes, each pushed forward past the next newline
+        static long[] chunkBounds(FileChannel channel, long chunkSize) throws IOException {
+            long fileSize = channel.size();
+            List<Long> bounds = new ArrayList<>();
+            bounds.add(0L);
+
+            ByteBuffer probe = ByteBuffer.allocate(256);
+            long pos = chunkSize;
+            while (pos < fileSize) {
+                long boundary = fileSize;
+                long scan = pos;
+                search:
+                while (scan < fileSize) {
+                    probe.clear();
+                    int read = channel.read(probe, scan);
+                    if (read <= 0) {
+                        break;
+                    }
+                    for (int i = 0; i < read; i++) {
+                        if (probe.get(i) == '\n') {
+                            boundary = scan + i + 1;
+                            break search;
+                        }
+                    }
+                    scan += read;
+                }
+
+                if (boundary >= fileSize) {
+                    break;
+                }
+                bounds.add(boundary);
+                pos = boundary + chunkSize;
+            }
+
+            bounds.add(fileSize);
+            long[] result = new long[bounds.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = bounds.get(i);
+            }
+            return result;
+        }
+
+        @Override
+        protected Columns compute() {
+            try {
+                return parseRange(channel, start, end);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        static Columns parseRange(FileChannel channel, long start, long end) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+            Columns columns = new Columns((int) Math.min((end - start) / 16 + 1, Integer.MAX_VALUE - 8));
+            parseLines(buffer, buffer.limit(), start, columns);
+            return columns;
+        }
+
+        // Where parsed pairs go, in file order
+        interface Sink {
+            void add(int left, int right) throws IOException;
+        }
+
+        // Parses buffer[0, limit), which must end at a line boundary or at the end of the input;
+        // offset is the file position of buffer[0], for error messages
+        static void parseLines(ByteBuffer buffer, int limit, long offset, Sink sink) throws IOException {
+            int pos = 0;
+
+            while (pos < limit) {
+                // One line, split on whitespace like the original String.split. Only a line with
+                // exactly two tokens holds a pair, so a token's validity is settled at the end of
+                // the line: headers and other lines with one or three tokens are skipped
+                int tokens = 0;
+                long first = 0;
+                long second = 0;
+                int firstStart = 0;
+                int secondStart = 0;
+                byte b;
+                while (pos < limit && (b = buffer.get(pos)) != '\n') {
+                    if (isSeparator(b)) {
+                        pos++;
+                        continue;
+                    }
+
+                    int tokenStart = pos;
+                    boolean negative = b == '-';
+                    if (negative || b == '+') {
+                        pos++;
+                    }
+                    int digitsStart = pos;
+                    long value = 0;
+                    while (pos < limit && (b = buffer.get(pos)) >= '0' && b <= '9') {
+                        // Saturates just past the int range, which is enough to reject it later
+                        value = Math.min(value * 10 + (b - '0'), (long) Integer.MAX_VALUE + 2);
+                        pos++;
+                    }
+                    boolean numeric = pos > digitsStart && (pos == limit || isSeparator(buffer.get(pos)));
+                    while (pos < limit && !isSeparator(buffer.get(pos))) {
+                        pos++;
+                    }
+
+                    long token = !numeric ? MALFORMED : negative ? -value : value;
+                    if (tokens == 0) {
+                        first = token;
+                        firstStart = tokenStart;
+                    } else if (tokens == 1) {
+                        second = token;
+                        secondStart = tokenStart;
+                    }
+                    tokens++;
+                }
+                pos++; // Skip the newline
+
+                if (tokens == 2) {
+                    sink.add(checkedId(first, offset + firstStart), checkedId(second, offset + secondStart));
+                }
+            }
+        }
+
+        // The whitespace that String.split("\\s+") splits on
+        private static boolean isSeparator(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f' || b == 0x0B;
+        }
+
+        private static int checkedId(long token, long position) {
+            if (token == MALFORMED) {
+                throw new NumberFormatException("Malformed location ID at byte " + position);
+            }
+            if (token < Integer.MIN_VALUE || token > Integer.MAX_VALUE) {
+                throw new NumberFormatException("Location ID out of range at byte " + position);
+            }
+            return (int) token;
+        }
+
+        static class Columns implements Sink {
+            int[] left;
+            int[] right;
+            int size;
+
+            Columns(int capacity) {
+                left = new int[Math.max(capacity, 16)];
+                right = new int[Math.max(capacity, 16)];
+            }
+
+            @Override
+            public void add(int l, int r) {
+                if (size == left.length) {
+                    int newCapacity = size + (size >> 1) + 1;
+                    left = Arrays.copyOf(left, newCapacity);
+                    right = Arrays.copyOf(right, newCapacity);
+                }
+                left[size] = l;
+                right[size] = r;
+                size++;
+            }
+
+            static Columns concat(List<Columns> parts) {
+                long total = 0;
+                for (Columns part : parts) {
+                    total += part.size;
+                }
+                if (total > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Too many location pairs to hold in memory: " + total);
+                }
+
+                Columns result = new Columns((int) total);
+                for (Columns part : parts) {
+                    System.arraycopy(part.left, 0, result.left, result.size, part.size);
+                    System.arraycopy(part.right, 0, result.right, result.size, part.size);
+                    result.size += part.size;
+                }
+                return result;
+            }
+        }
+    }
+
+    // =============================
+    // INCREMENTAL MODE
+    // =============================
+    // Keeps both answers current while pairs are added and removed.
+    //
+    // Part 2 is sum(v * countLeft(v) * countRight(v)), so each single insert or delete moves it
+    // by v times the count on the other side.
+    //
+    // Part 1 uses the fact that pairing two sorted lists costs sum over x of |D(x)|, where
+    // D(x) = #{left <= x} - #{right <= x}. Adding the pair (l, r) adds +1 to D on [l, r) (or -1
+    // on [r, l)), so we keep D in a sparse segment tree over the int range that stores min, max
+    // and sum(|D|) per node. A range update stops at any node whose values all keep their sign,
+    // which costs O(log U) plus the number of sign changes of D inside the updated range.
+
+    public static class Incremental {
+        private static final int NONE = -1;
+
+        private final Map<Integer, Integer> leftCounts = new HashMap<>();
+        private final Map<Integer, Integer> rightCounts = new HashMap<>();
+        private long similarity;
+        private int size;
+
+        // Segment tree nodes, stored column-wise; a node without children holds a uniform value
+        private int[] lowerChild = new int[64];
+        private int[] upperChild = new int[64];
+        private int[] min = new int[64];
+        private int[] max = new int[64];
+        private int[] pending = new int[64];
+        private long[] sumAbs = new long[64];
+        private int nodeCount;
+        private int freeList = NONE;
+        private final int root;
+
+        public Incremental() {
+            root = newNode(0, 1L << 32);
+        }
+
+        public void add(int l, int r) {
+            similarity += (long) l * rightCounts.getOrDefault(l, 0);
+            leftCounts.merge(l, 1, Integer::sum);
+            similarity += (long) r * leftCounts.getOrDefault(r, 0);
+            rightCounts.merge(r, 1, Integer::sum);
+
+            shift(l, r, 1);
+            size++;
+        }
+
+        public void remove(int l, int r) {
+            if (leftCounts.getOrDefault(l, 0) == 0 || rightCounts.getOrDefault(r, 0) == 0) {
+                throw new IllegalArgumentException("Pair not present: " + l + ", " + r);
+            }
+
+            decrement(leftCounts, l);
+            similarity -= (long) l * rightCounts.getOrDefault(l, 0);
+            decrement(rightCounts, r);
+            similarity -= (long) r * leftCounts.getOrDefault(r, 0);
+
+            shift(l, r, -1);
+            size--;
+        }
+
+        public long totalDistance() {
+            return sumAbs[root];
+        }
+
+        public long similarityScore() {
+            return similarity;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private static void decrement(Map<Integer, Integer> counts, int value) {
+            counts.computeIfPresent(value, (k, c) -> c == 1 ? null : c - 1);
+        }
+
+        // Adding l raises D on [l, inf) and adding r lowers it on [r, inf); only the gap differs
+        private void shift(int l, int r, int sign) {
+            if (l < r) {
+                update(root, Integer.MIN_VALUE, Integer.MAX_VALUE, l, r - 1, sign);
+            } else if (r < l) {
+                update(root, Integer.MIN_VALUE, Integer.MAX_VALUE, r, l - 1, -sign);
+            }
+        }
+
+        private void update(int node, long lo, long hi, long from, long to, int delta) {
+            if (to < lo || hi < from) {
+                return;
+            }
+
+            long length = hi - lo + 1;
+            if (from <= lo && hi <= to && keepsSign(node, delta)) {
+                apply(node, delta, length);
+                return;
+            }
+
+            split(node, length);
+            long mid = lo + (hi - lo) / 2;
+            update(lowerChild[node], lo, mid, from, to, delta);
+            update(upperChild[node], mid + 1, hi, from, to, delta);
+            pull(node);
+        }
+
+        // |v + delta| - |v| is the same for every v in the node, or the node is uniform
+        private boolean keepsSign(int node, int delta) {
+            if (lowerChild[node] == NONE) {
+                return true;
+            }
+            return (min[node] >= 0 && min[node] + delta >= 0) || (max[node] <= 0 && max[node] + delta <= 0);
+        }
+
+        private void apply(int node, int delta, long length) {
+            if (lowerChild[node] == NONE) {
+                sumAbs[node] = Math.abs((long) min[node] + delta) * length;
+            } else if (min[node] >= 0 && min[node] + delta >= 0) {
+                sumAbs[node] += delta * length;
+            } else {
+                sumAbs[node] -= delta * length;
+            }
+            min[node] += delta;
+            max[node] += delta;
+            pending[node] += delta;
+        }
+
+        private void split(int node, long length) {
+            long lowerLength = (length + 1) / 2;
+            long upperLength = length - lowerLength;
+
+            if (lowerChild[node] == NONE) {
+                int value = min[node];
+                int lower = newNode(value, lowerLength);
+                int upper = newNode(value, upperLength);
+                lowerChild[node] = lower;
+                upperChild[node] = upper;
+            } else if (pending[node] != 0) {
+                apply(lowerChild[node], pending[node], lowerLength);
+                apply(upperChild[node], pending[node], upperLength);
+            }
+            pending[node] = 0;
+        }
+
+        private void pull(int node) {
+            int lower = lowerChild[node];
+            int upper = upperChild[node];
+            min[node] = Math.min(min[lower], min[upper]);
+            max[node] = Math.max(max[lower], max[upper]);
+            sumAbs[node] = sumAbs[lower] + sumAbs[upper];
+
+            // Collapse back into a uniform node once both halves agree, so removals free memory
+            if (lowerChild[lower] == NONE && lowerChild[upper] == NONE && min[node] == max[node]) {
+                release(lower);
+                release(upper);
+                lowerChild[node] = NONE;
+                upperChild[node] = NONE;
+            }
+        }
+
+        private int newNode(int value, long length) {
+            int node;
+            if (freeList != NONE) {
+                node = freeList;
+                freeList = lowerChild[node];
+            } else {
+                if (nodeCount == min.length) {
+                    int capacity = nodeCount * 2;
+                    lowerChild = Arrays.copyOf(lowerChild, capacity);
+                    upperChild = Arrays.copyOf(upperChild, capacity);
+                    min = Arrays.copyOf(min, capacity);
+                    max = Arrays.copyOf(max, capacity);
+                    pending = Arrays.copyOf(pending, capacity);
+                    sumAbs = Arrays.copyOf(sumAbs, capacity);
+                }
+                node = nodeCount++;
+            }
+
+            lowerChild[node] = NONE;
+            upperChild[node] = NONE;
+            min[node] = value;
+            max[node] = value;
+            pending[node] = 0;
+            sumAbs[node] = Math.abs((long) value) * length;
+            return node;
+        }
+
+        private void release(int node) {
+            lowerChild[node] = freeList;
+            freeList = node;
+        }
+    }
+
+    // =============================
+    // EXTERNAL MODE
+    // =============================
+    // For inputs that don't fit in memory even as int[]. The file is read through one reused
+    // buffer and parsed straight into fixed-size column buffers sized from the heap budget;
+    // each full buffer is sorted and spilled to a temp file as a run of varint-encoded deltas.
+    // All runs of both columns are then merged through one heap, so every value arrives with
+    // its left and right counts: part 2 is sum(v * countLeft * countRight) and part 1 is
+    // sum(|D| * gap) with D = #left seen - #right seen, the same identity the incremental mode
+    // relies on.
+
+    public static class ExternalSort {
+        // Each buffered pair costs two ints plus one int of sort scratch, as the columns are
+        // sorted one at a time: the radix buffer, or a counts array capped at the run length
+        private static final int BYTES_PER_PAIR = 3 * Integer.BYTES;
+        private static final int MIN_RUN_LENGTH = 1024;
+        private static final int MIN_IO_BUFFER = 4096;
+        private static final int MAX_IO_BUFFER = 1 << 16;
+
+        private final long heapBudgetBytes;
+        private final Path tempDirectory;
+
+        public ExternalSort(long heapBudgetBytes) {
+            this(heapBudgetBytes, null);
+        }
+
+        public ExternalSort(long heapBudgetBytes, Path tempDirectory) {
+            if (heapBudgetBytes <= 0) {
+                throw new IllegalArgumentException("Heap budget must be positive: " + heapBudgetBytes);
+            }
+            this.heapBudgetBytes = heapBudgetBytes;
+            this.tempDirectory = tempDirectory;
+        }
+
+        public Answers solve(String filePath) throws IOException {
+            // Half of the budget goes to the run buffers and their sort scratch, at most a quarter
+            // to the read buffer
+            int runLength = (int) Math.max(MIN_RUN_LENGTH,
+                    Math.min(heapBudgetBytes / 2 / BYTES_PER_PAIR, Integer.MAX_VALUE - 8));
+            int bufferSize = (int) Math.max(MIN_IO_BUFFER, Math.min(MAX_IO_BUFFER, heapBudgetBytes / 4));
+
+            List<Run> runs = new ArrayList<>();
+            try {
+                spillRuns(Paths.get(filePath), runLength, bufferSize, runs);
+                return merge(runs);
+            } finally {
+                for (Run run : runs) {
+                    Files.deleteIfExists(run.file);
+                }
+            }
+        }
+
+        private void spillRuns(Path path, int runLength, int bufferSize, List<Run> runs) throws IOException {
+            RunBuffer runBuffer = new RunBuffer(runLength, runs);
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                // File position of buffer[0]; the buffer holds the unparsed tail of the last read
+                long offset = 0;
+                boolean done = false;
+                while (!done) {
+                    done = channel.read(buffer, offset + buffer.position()) < 0;
+                    int filled = buffer.position();
+                    int end = done ? filled : lastLineEnd(buffer, filled);
+                    if (end == 0 && !done) {
+                        if (filled == buffer.capacity()) {
+                            // A line longer than the buffer
+                            buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                        }
+                        continue;
+                    }
+
+                    PairParser.parseLines(buffer, end, offset, runBuffer);
+                    buffer.limit(filled).position(end);
+                    buffer.compact();
+                    offset += end;
+                }
+            }
+            runBuffer.flush();
+        }
+
+        // Just past the last newline in buffer[0, filled), or 0 when there is none
+        private static int lastLineEnd(ByteBuffer buffer, int filled) {
+            for (int i = filled - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        // Fills the column buffers with parsed pairs and spills them whenever they are full
+        private class RunBuffer implements PairParser.Sink {
+            private final int[] leftRun;
+            private final int[] rightRun;
+            private final List<Run> runs;
+            private int filled;
+
+            RunBuffer(int runLength, List<Run> runs) {
+                this.leftRun = new int[runLength];
+                this.rightRun = new int[runLength];
+                this.runs = runs;
+            }
+
+            @Override
+            public void add(int left, int right) throws IOException {
+                leftRun[filled] = left;
+                rightRun[filled] = right;
+                if (++filled == leftRun.length) {
+                    flush();
+                }
+            }
+
+            void flush() throws IOException {
+                if (filled > 0) {
+                    writeRunPair(leftRun, rightRun, filled, runs);
+                    filled = 0;
+                }
+            }
+        }
+
+        private void writeRunPair(int[] leftRun, int[] rightRun, int length, List<Run> runs) throws IOException {
+            runs.add(writeRun(leftRun, length, true));
+            runs.add(writeRun(rightRun, length, false));
+        }
+
+        private Run writeRun(int[] values, int length, boolean isLeft) throws IOException {
+            sort(values, length, values.length);
+
+            Path file = tempDirectory == null
+                    ? Files.createTempFile("day1-run", ".bin")
+                    : Files.createTempFile(tempDirectory, "day1-run", ".bin");
+            Run run = new Run(file, length, isLeft);
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), MAX_IO_BUFFER)) {
+                long previous = Integer.MIN_VALUE;
+                for (int i = 0; i < length; i++) {
+                    long delta = values[i] - previous;
+                    previous = values[i];
+                    while (delta >= 0x80) {
+                        out.write((int) (delta & 0x7F) | 0x80);
+                        delta >>>= 7;
+                    }
+                    out.write((int) delta);
+                }
+            }
+            return run;
+        }
+
+        private Answers merge(List<Run> runs) throws IOException {
+            int ioBuffer = (int) Math.max(MIN_IO_BUFFER,
+                    Math.min(MAX_IO_BUFFER, heapBudgetBytes / 4 / Math.max(1, runs.size())));
+
+            PriorityQueue<RunReader> heap = new PriorityQueue<>(Math.max(1, runs.size()),
+                    (a, b) -> Integer.compare(a.value, b.value));
+            List<RunReader> readers = new ArrayList<>();
+            try {
+                for (Run run : runs) {
+                    RunReader reader = new RunReader(run, ioBuffer);
+                    readers.add(reader);
+                    if (reader.advance()) {
+                        heap.add(reader);
+                    }
+                }
+
+                long totalDistance = 0;
+                long similarityScore = 0;
+                long difference = 0; // #left - #right among values already merged
+                long previous = 0;
+
+                while (!heap.isEmpty()) {
+                    int value = heap.peek().value;
+                    long leftCount = 0;
+                    long rightCount = 0;
+
+                    while (!heap.isEmpty() && heap.peek().value == value) {
+                        RunReader reader = heap.poll();
+                        // Drain the whole equal run from this reader before re-queueing it
+                        do {
+                            if (reader.run.isLeft) {
+                                leftCount++;
+                            } else {
+                                rightCount++;
+                            }
+                        } while (reader.advance() && reader.value == value);
+
+                        if (reader.hasValue) {
+                            heap.add(reader);
+                        }
+                    }
+
+                    totalDistance += Math.abs(difference) * (value - previous);
+                    similarityScore += value * leftCount * rightCount;
+                    difference += leftCount - rightCount;
+                    previous = value;
+                }
+
+                return new Answers(totalDistance, similarityScore);
+            } finally {
+                for (RunReader reader : readers) {
+                    reader.in.close();
+                }
+            }
+        }
+
+        private static class Run {
+            final Path file;
+            final int length;
+            final boolean isLeft;
+
+            Run(Path file, int length, boolean isLeft) {
+                this.file = file;
+                this.length = length;
+                this.isLeft = isLeft;
+            }
+        }
+
+        private static class RunReader {
+            final Run run;
+            final InputStream in;
+            int remaining;
+            boolean hasValue;
+            int value;
+            long previous = Integer.MIN_VALUE;
+
+            RunReader(Run run, int bufferSize) throws IOException {
+                this.run = run;
+                this.in = new BufferedInputStream(Files.newInputStream(run.file), bufferSize);
+                this.remaining = run.length;
+            }
+
+            boolean advance() throws IOException {
+                hasValue = remaining > 0;
+                if (!hasValue) {
+                    return false;
+                }
+
+                long delta = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = in.read();
+                    if (b < 0) {
+                        throw new IOException("Truncated run file: " + run.file);
+                    }
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                previous += delta;
+                value = (int) previous;
+                remaining--;
+                return true;
+            }
+        }
+    }
+
+    public static class Answers {
+        public final long totalDistance;
+        public final long similarityScore;
+
+        Answers(long totalDistance, long similarityScore) {
+            this.totalDistance = totalDistance;
+            this.similarityScore = similarityScore;
+        }
+    }
 }
@@ -1,24 +1,44 @@
 package org.aoc.days;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
 
 public class Day2 {
+    // The SIMD kernel needs --add-modules jdk.incubator.vector; without it we stay scalar
+    private static final boolean VECTOR_KERNEL = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
     private final String filePath;
+    // Removes up to the configured number of bad levels from a report in part 2
+    private final Dampener dampener;
+    // Parsed on first use and shared by both parts
+    private Reports reports;
 
     public Day2(String filePath) {
+        this(filePath, 1);
+    }
+
+    public Day2(String filePath, int tolerance) {
         this.filePath = filePath;
+        this.dampener = new Dampener(tolerance);
     }
 
     public int runPart(int part) throws IOException {
         switch (part) {
             case 1:
-                part1();
-                break;
+                return part1();
             case 2:
-                part2();
-                break;
+                return part2();
             default:
                 System.out.println("Invalid part number.");
 
@@ -26,92 +46,225 @@ public class Day2 {
         return -1;
     }
 
-    public void part1() throws IOException {
+    public int part1() throws IOException {
+        Reports reports = reports();
         int safeReports = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] levels = line.trim().split("\\s+");
-                if (isSafeReport(levels)) {
+        if (VECTOR_KERNEL) {
+            safeReports = VectorKernel.markSafe(reports.levels, reports.offsets, reports.count, new boolean[reports.count]);
+        } else {
+            for (int r = 0; r < reports.count; r++) {
+                if (isSafe(reports.levels, reports.offsets[r], reports.offsets[r + 1])) {
                     safeReports++;
                 }
             }
         }
 
         System.out.println("Safe Reports (Part 1): " + safeReports + "\n");
+        return safeReports;
     }
 
-    public void part2() throws IOException {
+    public int part2() throws IOException {
+        Reports reports = reports();
         int safeReports = 0;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] levels = line.trim().split("\\s+");
-                if (isSafeReport(levels) || canBeMadeSafe(levels)) {
+        if (VECTOR_KERNEL) {
+            // Let the kernel settle the already-safe reports, then run the dampener on the rest
+            boolean[] safe = new boolean[reports.count];
+            VectorKernel.markSafe(reports.levels, reports.offsets, reports.count, safe);
+            for (int r = 0; r < reports.count; r++) {
+                if (safe[r] || dampener.canBeFixed(reports.levels, reports.offsets[r], reports.offsets[r + 1])) {
+                    safeReports++;
+                }
+            }
+        } else {
+            for (int r = 0; r < reports.count; r++) {
+                if (isSafeWithTolerance(reports.levels, reports.offsets[r], reports.offsets[r + 1])) {
                     safeReports++;
                 }
             }
         }
 
         System.out.println("Safe Reports (Part 2): " + safeReports + "\n");
+        return safeReports;
     }
 
-    private boolean isSafeReport(String[] levels) {
-        int[] nums = new int[levels.length];
-        for (int i = 0; i < levels.length; i++) {
-            nums[i] = Integer.parseInt(levels[i]);
+    private Reports reports() throws IOException {
+        if (reports == null) {
+            reports = Reports.parse(Files.readAllBytes(Paths.get(filePath)));
         }
+        return reports;
+    }
 
-        boolean isIncreasing = true;
-        boolean isDecreasing = true;
+    // All reports in CSR layout: the levels of report r are levels[offsets[r] .. offsets[r + 1])
+    static class Reports {
+        final int[] levels;
+        final int[] offsets;
+        final int count;
 
-        for (int i = 1; i < nums.length; i++) {
-            int diff = nums[i] - nums[i - 1];
+        private Reports(int[] levels, int[] offsets, int count) {
+            this.levels = levels;
+            this.offsets = offsets;
+            this.count = count;
+        }
 
-            // Check difference is between 1 and 3
-            if (Math.abs(diff) < 1 || Math.abs(diff) > 3) {
-                return false;
+        // Parses whitespace-separated levels straight from bytes, one report per non-blank line
+        static Reports parse(byte[] input) {
+            int[] levels = new int[Math.max(16, input.length / 3)];
+            int[] offsets = new int[Math.max(16, input.length / 16)];
+            int levelCount = 0;
+            int count = 0;
+
+            int pos = 0;
+            while (pos < input.length) {
+                int lineStart = levelCount;
+                while (pos < input.length && input[pos] != '\n') {
+                    byte b = input[pos];
+                    if (b == ' ' || b == '\t' || b == '\r') {
+                        pos++;
+                        continue;
+                    }
+
+                    boolean negative = b == '-';
+                    if (negative) {
+                        pos++;
+                    }
+                    int tokenStart = pos;
+                    long value = 0;
+                    while (pos < input.length && input[pos] >= '0' && input[pos] <= '9') {
+                        value = value * 10 + (input[pos] - '0');
+                        if (value > Integer.MAX_VALUE) {
+                            throw new NumberFormatException("Level out of range at byte " + tokenStart);
+                        }
+                        pos++;
+                    }
+                    if (pos == tokenStart || (pos < input.length && !isSeparator(input[pos]))) {
+                        throw new NumberFormatException("Malformed level at byte " + tokenStart);
+                    }
+
+                    if (levelCount == levels.length) {
+                        levels = Arrays.copyOf(levels, levelCount * 2);
+                    }
+                    levels[levelCount++] = (int) (negative ? -value : value);
+                }
+                pos++; // Skip the newline
+
+                if (levelCount > lineStart) {
+                    if (count + 1 >= offsets.length) {
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    }
+                    offsets[count++] = lineStart;
+                    offsets[count] = levelCount;
+                }
             }
 
-            if (diff > 0) isDecreasing = false;
-            if (diff < 0) isIncreasing = false;
+            return new Reports(levels, offsets, count);
         }
 
-        return isIncreasing || isDecreasing;
+        private static boolean isSeparator(byte b) {
+            return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+        }
+    }
+
+    private boolean isSafeWithTolerance(int[] levels, int from, int to) {
+        return isSafe(levels, from, to) || dampener.canBeFixed(levels, from, to);
     }
 
-    private boolean canBeMadeSafe(String[] levels) {
-        int[] nums = new int[levels.length];
-        for (int i = 0; i < levels.length; i++) {
-            nums[i] = Integer.parseInt(levels[i]);
+    // The Problem Dampener: decides whether an unsafe report can be fixed by removing up to
+    // tolerance levels. Holds the DP scratch row, so each thread needs its own instance.
+    static class Dampener {
+        private final int tolerance;
+        private int[] removals = new int[16];
+
+        Dampener(int tolerance) {
+            if (tolerance < 0) {
+                throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+            }
+            this.tolerance = tolerance;
         }
 
-        for (int i = 0; i < nums.length; i++) {
-            // Create a new array with one element removed
-            int[] modified = new int[nums.length - 1];
-            for (int j = 0, k = 0; j < nums.length; j++) {
-                if (j != i) {
-                    modified[k++] = nums[j];
+        // Whether removing up to tolerance levels makes an unsafe report safe
+        boolean canBeFixed(int[] levels, int from, int to) {
+            switch (tolerance) {
+                case 0:
+                    return false;
+                case 1:
+                    return canBeMadeSafe(levels, from, to, 1) || canBeMadeSafe(levels, from, to, -1);
+                default:
+                    return minRemovals(levels, from, to, 1) <= tolerance
+                            || minRemovals(levels, from, to, -1) <= tolerance;
+            }
+        }
+
+        // A report fixable by one removal has its removed level at the first bad pair for the
+        // chosen direction: every pair before it survives the removal untouched, and so does any
+        // pair after it. That leaves two candidates per direction, checked in place.
+        private boolean canBeMadeSafe(int[] levels, int from, int to, int direction) {
+            int bad = firstViolation(levels, from, to, direction);
+            return bad < 0
+                    || isSafeWithout(levels, from, to, bad, direction)
+                    || isSafeWithout(levels, from, to, bad + 1, direction);
+        }
+
+        private int firstViolation(int[] levels, int from, int to, int direction) {
+            for (int i = from; i + 1 < to; i++) {
+                if (!isValidStep(levels[i], levels[i + 1], direction)) {
+                    return i;
                 }
             }
+            return -1;
+        }
 
-            // Check if the modified report is safe
-            if (isSafe(modified)) {
-                return true;
+        private boolean isSafeWithout(int[] levels, int from, int to, int skip, int direction) {
+            int previous = -1;
+            for (int i = from; i < to; i++) {
+                if (i == skip) {
+                    continue;
+                }
+                if (previous >= 0 && !isValidStep(levels[previous], levels[i], direction)) {
+                    return false;
+                }
+                previous = i;
             }
+            return true;
         }
 
-        return false;
+        // removals[i] is the fewest levels removed before i when i is the last level kept so far.
+        // Since at most tolerance levels can go, the previous kept level is one of the
+        // tolerance + 1 levels before i, which keeps the whole pass at O(n * k).
+        private int minRemovals(int[] levels, int from, int to, int direction) {
+            int n = to - from;
+            if (removals.length < n) {
+                removals = new int[Math.max(n, removals.length * 2)];
+            }
+
+            int best = n - 1; // Keep only one level
+            for (int i = 0; i < n; i++) {
+                int fewest = i; // Drop everything before i
+                for (int p = Math.max(0, i - tolerance - 1); p < i; p++) {
+                    if (isValidStep(levels[from + p], levels[from + i], direction)) {
+                        fewest = Math.min(fewest, removals[p] + (i - p - 1));
+                    }
+                }
+                removals[i] = fewest;
+                best = Math.min(best, fewest + (n - 1 - i));
+            }
+            return best;
+        }
+
+        // direction is 1 for increasing reports and -1 for decreasing ones
+        private static boolean isValidStep(int from, int to, int direction) {
+            int diff = (to - from) * direction;
+            return diff >= 1 && diff <= 3;
+        }
     }
 
-    private boolean isSafe(int[] nums) {
+    static boolean isSafe(int[] levels, int from, int to) {
         boolean isIncreasing = true;
         boolean isDecreasing = true;
 
-        for (int i = 1; i < nums.length; i++) {
-            int diff = nums[i] - nums[i - 1];
+        for (int i = from + 1; i < to; i++) {
+            int diff = levels[i] - levels[i - 1];
 
             // Check difference is between 1 and 3
             if (Math.abs(diff) < 1 || Math.abs(diff) > 3) {
@@ -124,4 +277,217 @@ public class Day2 {
 
         return isIncreasing || isDecreasing;
     }
+
+    // =============================
+    // STREAMING FEED
+    // =============================
+    // Counts reports as they arrive, either parsed from an InputStream or pushed by a
+    // Flow.Publisher one report at a time. Only the current report is held in memory, and the
+    // counters are atomics so other threads can read them while the feed is still running.
+
+    public static class ReportFeed implements Flow.Subscriber<int[]> {
+        private static final int READ_BUFFER_SIZE = 8192;
+
+        private final Dampener dampener;
+        private final AtomicLong reports = new AtomicLong();
+        private final AtomicLong safeReports = new AtomicLong();
+        private final AtomicLong dampenedSafeReports = new AtomicLong();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        public ReportFeed() {
+            this(1);
+        }
+
+        public ReportFeed(int tolerance) {
+            this.dampener = new Dampener(tolerance);
+        }
+
+        public long reports() {
+            return reports.get();
+        }
+
+        // Part 1 so far
+        public long safeReports() {
+            return safeReports.get();
+        }
+
+        // Part 2 so far
+        public long dampenedSafeReports() {
+            return dampenedSafeReports.get();
+        }
+
+        // Completes when the publisher signals onComplete, or exceptionally on onError
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        // Reads reports until the end of the stream, one per non-blank line
+        public void consume(InputStream in) throws IOException {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int[] levels = new int[16];
+            int length = 0;
+            long value = 0;
+            boolean inNumber = false;
+            boolean negative = false;
+            long position = 0;
+
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (b >= '0' && b <= '9') {
+                        value = value * 10 + (b - '0');
+                        if (value > Integer.MAX_VALUE) {
+                            throw new NumberFormatException("Level out of range at byte " + position);
+                        }
+                        inNumber = true;
+                        continue;
+                    }
+
+                    if (b == '-' && !inNumber && !negative) {
+                        negative = true;
+                        continue;
+                    }
+                    if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                        throw new NumberFormatException("Malformed level at byte " + position);
+                    }
+
+                    if (inNumber) {
+                        if (length == levels.length) {
+                            levels = Arrays.copyOf(levels, length * 2);
+                        }
+                        levels[length++] = (int) (negative ? -value : value);
+                    } else if (negative) {
+                        throw new NumberFormatException("Malformed level at byte " + position);
+                    }
+                    value = 0;
+                    inNumber = false;
+                    negative = false;
+
+                    if (b == '\n' && length > 0) {
+                        accept(levels, length);
+                        length = 0;
+                    }
+                }
+            }
+
+            if (inNumber) {
+                if (length == levels.length) {
+                    levels = Arrays.copyOf(levels, length + 1);
+                }
+                levels[length++] = (int) (negative ? -value : value);
+            } else if (negative) {
+                throw new NumberFormatException("Malformed level at byte " + position);
+            }
+            if (length > 0) {
+                accept(levels, length);
+            }
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(int[] report) {
+            accept(report, report.length);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completion.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completion.complete(null);
+        }
+
+        private void accept(int[] levels, int length) {
+            reports.incrementAndGet();
+            if (isSafe(levels, 0, length)) {
+                safeReports.incrementAndGet();
+                dampenedSafeReports.incrementAndGet();
+            } else if (dampener.canBeFixed(levels, 0, length)) {
+                dampenedSafeReports.incrementAndGet();
+            }
+        }
+    }
+
+    // =============================
+    // VECTOR KERNEL
+    // =============================
+    // Checks one report per lane: lane i walks report base + i, gathering its j-th level on
+    // step j. Differences go through lane-wise abs and range compares, and two sticky masks
+    // record whether a lane has gone up or down so far. Lanes past the end of their report
+    // are masked off, so reports of different lengths share a batch.
+
+    static class VectorKernel {
+        private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+        static int markSafe(int[] levels, int[] offsets, int count, boolean[] safe) {
+            int lanes = SPECIES.length();
+            int[] starts = new int[lanes];
+            int[] lengths = new int[lanes];
+            int safeReports = 0;
+
+            for (int base = 0; base < count; base += lanes) {
+                int batch = Math.min(lanes, count - base);
+                int maxLength = 0;
+                for (int i = 0; i < lanes; i++) {
+                    if (i < batch) {
+                        starts[i] = offsets[base + i];
+                        lengths[i] = offsets[base + i + 1] - starts[i];
+                        maxLength = Math.max(maxLength, lengths[i]);
+                    } else {
+                        starts[i] = 0;
+                        lengths[i] = 0;
+                    }
+                }
+
+                IntVector length = IntVector.fromArray(SPECIES, lengths, 0);
+                VectorMask<Integer> bad = SPECIES.maskAll(false);
+                VectorMask<Integer> up = SPECIES.maskAll(false);
+                VectorMask<Integer> down = SPECIES.maskAll(false);
+                IntVector previous = IntVector.fromArray(SPECIES, levels, 0, starts, 0,
+                        length.compare(VectorOperators.GT, 0));
+
+                for (int j = 1; j < maxLength; j++) {
+                    VectorMask<Integer> active = length.compare(VectorOperators.GT, j);
+                    IntVector current = IntVector.fromArray(SPECIES, levels, j, starts, 0, active);
+                    IntVector diff = current.sub(previous);
+                    IntVector abs = diff.abs();
+
+                    VectorMask<Integer> outOfRange = abs.compare(VectorOperators.LT, 1)
+                            .or(abs.compare(VectorOperators.GT, 3));
+                    bad = bad.or(outOfRange.and(active));
+                    up = up.or(diff.compare(VectorOperators.GT, 0).and(active));
+                    down = down.or(diff.compare(VectorOperators.LT, 0).and(active));
+                    previous = current;
+
+                    if (bad.or(up.and(down)).allTrue()) {
+                        break;
+                    }
+                }
+
+                VectorMask<Integer> unsafe = bad.or(up.and(down));
+                for (int i = 0; i < batch; i++) {
+                    safe[base + i] = !unsafe.laneIsSet(i);
+                    if (safe[base + i]) {
+                        safeReports++;
+                    }
+                }
+            }
+
+            return safeReports;
+        }
+    }
 }
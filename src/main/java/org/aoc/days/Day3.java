@@ -1,26 +1,69 @@
 package org.aoc.days;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
 
 public class Day3 {
+    // Files are mapped in windows of this size; the scanner carries its state across them
+    private static final long MAP_WINDOW = 1L << 30;
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+    // The SIMD prefilter needs --add-modules jdk.incubator.vector; without it we stay scalar
+    static final boolean VECTOR_PREFILTER = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    public static final Instruction MUL = Instruction.of("mul(", Arguments.of(2, 1, Arguments.UNBOUNDED, ',', ")"),
+            (accumulator, args) -> accumulator.mul(args[0] * args[1]));
+    public static final Instruction DO = Instruction.of("do()", Arguments.NONE,
+            (accumulator, args) -> accumulator.setEnabled(true));
+    public static final Instruction DONT = Instruction.of("don't()", Arguments.NONE,
+            (accumulator, args) -> accumulator.setEnabled(false));
+
+    public static final InstructionSet DEFAULT_INSTRUCTIONS = InstructionSet.of(MUL, DO, DONT);
+
     private final String filePath;
+    // Scan newline-independent chunks of the file on the fork/join pool
+    private final boolean parallel;
+    private final InstructionSet instructions;
 
     public Day3(String filePath) {
+        this(filePath, false);
+    }
+
+    public Day3(String filePath, boolean parallel) {
+        this(filePath, parallel, DEFAULT_INSTRUCTIONS);
+    }
+
+    public Day3(String filePath, boolean parallel, InstructionSet instructions) {
         this.filePath = filePath;
+        this.parallel = parallel;
+        this.instructions = instructions;
     }
 
-    public int runPart(int part) throws IOException {
+    public long runPart(int part) throws IOException {
         switch (part) {
             case 1:
-                part1();
-                break;
+                return part1();
             case 2:
-                part2();
-                break;
+                return part2();
             default:
                 System.out.println("Invalid part number.");
 
@@ -29,54 +72,705 @@ public class Day3 {
 
     }
 
-    public void part1() throws IOException {
-        int totalSum = 0;
-        Pattern mulPattern = Pattern.compile("mul\\((\\d+),(\\d+)\\)");
+    public long part1() throws IOException {
+        long totalSum = scan().total;
+
+        System.out.println("Total Sum of Valid Multiplications (Day 3, Part 1): " + totalSum +"\n");
+        return totalSum;
+    }
+
+    public long part2() throws IOException {
+        long totalSum = scan().enabledTotal;
+
+        System.out.println("Total Sum of Enabled Multiplications (Day 3, Part 2): " + totalSum +"\n");
+        return totalSum;
+    }
+
+    private Accumulator scan() throws IOException {
+        Path path = Paths.get(filePath);
+        return parallel ? ChunkScan.scanFile(path, instructions, ChunkScan.CHUNK_SIZE) : scanFile(path, instructions);
+    }
+
+    static Accumulator scanFile(Path path, InstructionSet instructions) throws IOException {
+        Scanner scanner = new Scanner(instructions);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += MAP_WINDOW) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_WINDOW, size - pos));
+                scanner.scan(window, 0, window.limit());
+            }
+        }
+        return scanner.accumulator;
+    }
+
+    // Reads the channel through one fixed-size buffer until end of stream, so memory stays
+    // constant however long a line is; works for stdin or pipes via Channels.newChannel
+    public static Accumulator scan(ReadableByteChannel channel) throws IOException {
+        return scan(channel, DEFAULT_INSTRUCTIONS);
+    }
+
+    public static Accumulator scan(ReadableByteChannel channel, InstructionSet instructions) throws IOException {
+        return scan(channel, instructions, STREAM_BUFFER_SIZE);
+    }
+
+    static Accumulator scan(ReadableByteChannel channel, InstructionSet instructions, int bufferSize) throws IOException {
+        Scanner scanner = new Scanner(instructions);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            scanner.scan(buffer, 0, buffer.limit());
+            buffer.clear();
+        }
+        return scanner.accumulator;
+    }
+
+    // Running results of a scan: every mul, and the muls issued while enabled
+    public static class Accumulator {
+        boolean enabled;
+        long total;
+        long enabledTotal;
+
+        Accumulator(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public void mul(long product) {
+            total += product;
+            if (enabled) {
+                enabledTotal += product;
+            }
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Matcher mulMatcher = mulPattern.matcher(line);
-                while (mulMatcher.find()) {
-                    int x = Integer.parseInt(mulMatcher.group(1));
-                    int y = Integer.parseInt(mulMatcher.group(2));
-                    totalSum += x * y;
+        // Part 1
+        public long total() {
+            return total;
+        }
+
+        // Part 2
+        public long enabledTotal() {
+            return enabledTotal;
+        }
+    }
+
+    // =============================
+    // INSTRUCTION SPI
+    // =============================
+    // An instruction is a literal prefix, an argument shape and an effect on the accumulator.
+    // mul(a,b) is the prefix "mul(" with two unbounded numbers separated by ',' and closed by
+    // ")"; do() is just the prefix "do()" with no arguments.
+
+    public interface Instruction {
+        String prefix();
+
+        Arguments arguments();
+
+        void execute(Accumulator accumulator, long[] args);
+
+        static Instruction of(String prefix, Arguments arguments, BiConsumer<Accumulator, long[]> effect) {
+            return new Instruction() {
+                @Override
+                public String prefix() {
+                    return prefix;
                 }
+
+                @Override
+                public Arguments arguments() {
+                    return arguments;
+                }
+
+                @Override
+                public void execute(Accumulator accumulator, long[] args) {
+                    effect.accept(accumulator, args);
+                }
+
+                @Override
+                public String toString() {
+                    return prefix;
+                }
+            };
+        }
+    }
+
+    public static final class Arguments {
+        public static final int UNBOUNDED = Integer.MAX_VALUE;
+        public static final Arguments NONE = new Arguments(0, 0, 0, ',', "");
+
+        final int count;
+        final int minDigits;
+        final int maxDigits;
+        final char separator;
+        final String terminator;
+
+        private Arguments(int count, int minDigits, int maxDigits, char separator, String terminator) {
+            this.count = count;
+            this.minDigits = minDigits;
+            this.maxDigits = maxDigits;
+            this.separator = separator;
+            this.terminator = terminator;
+        }
+
+        // count numbers of minDigits..maxDigits digits each, joined by separator, then terminator
+        public static Arguments of(int count, int minDigits, int maxDigits, char separator, String terminator) {
+            if (count < 1 || count > InstructionSet.MAX_ARGUMENTS) {
+                throw new IllegalArgumentException("Argument count must be between 1 and "
+                        + InstructionSet.MAX_ARGUMENTS + ": " + count);
+            }
+            if (minDigits < 1 || maxDigits < minDigits) {
+                throw new IllegalArgumentException("Invalid digit range: " + minDigits + ".." + maxDigits);
+            }
+            if (terminator.isEmpty()) {
+                throw new IllegalArgumentException("Arguments need a terminator to end the last number");
+            }
+            if (Character.isDigit(separator) || Character.isDigit(terminator.charAt(0))) {
+                throw new IllegalArgumentException("Separator and terminator can't start with a digit");
             }
+            return new Arguments(count, minDigits, maxDigits, separator, terminator);
         }
 
-        System.out.println("Total Sum of Valid Multiplications (Day 3, Part 1): " + totalSum +"\n");
+        // Zero-argument instructions that close with terminator after their prefix
+        public static Arguments none(String terminator) {
+            return new Arguments(0, 0, 0, ',', terminator);
+        }
     }
 
-    public void part2() throws IOException {
-        int totalSum = 0;
-        boolean mulEnabled = true;
-        Pattern instructionPattern = Pattern.compile("(do\\(\\))|(don't\\(\\))|mul\\((\\d+),(\\d+)\\)");
+    // =============================
+    // INSTRUCTION AUTOMATON
+    // =============================
+    // All registered instructions compile into one table-driven DFA over raw bytes, so a scan
+    // costs one table lookup per byte however many opcodes there are. The prefixes form an
+    // Aho-Corasick trie; each prefix leaf continues into states for its argument digits,
+    // separators and terminator. Each table entry packs the next state with an action that
+    // clears the operands, folds a digit into one of them or fires an instruction.
+    //
+    // A byte without an explicit transition follows the failure links, i.e. it is re-read
+    // from the longest suffix of the text so far that is still an instruction prefix. That
+    // keeps the leftmost, non-overlapping results of the old Matcher.find loop.
+
+    public static final class InstructionSet {
+        static final int MAX_ARGUMENTS = 8;
+
+        static final int ROOT = 0;
+        private static final int STATE_BITS = 20;
+        static final int STATE_MASK = (1 << STATE_BITS) - 1;
+        // Set on fallback entries, where a byte abandons the partial match it was extending
+        private static final int RESTART = 1 << STATE_BITS;
+        static final int ACTION_SHIFT = STATE_BITS + 1;
+
+        static final int NONE = 0;
+        static final int CLEAR = 1;
+        static final int DIGIT = 2;                      // DIGIT + i folds a digit into argument i
+        static final int FIRE = DIGIT + MAX_ARGUMENTS;   // FIRE + i runs instruction i
+        // Actions stay below bit 31 so entries are never negative
+        private static final int MAX_INSTRUCTIONS = (1 << (31 - ACTION_SHIFT)) - FIRE;
+
+        // transitions[state << 8 | byte] = next state | RESTART? | action << ACTION_SHIFT
+        final int[] transitions;
+        final Instruction[] instructions;
+        final int argumentSlots;
+        // First bytes of all prefixes: the only bytes at which an instruction can begin
+        final boolean[] firstBytes;
+        // The same bytes as a list, for the prefilter
+        final byte[] startBytes;
+        // No instruction repeats one of those first bytes after its own first byte
+        final boolean selfSynchronizing;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                Matcher instructionMatcher = instructionPattern.matcher(line);
+        private InstructionSet(int[] transitions, Instruction[] instructions, int argumentSlots,
+                               boolean[] firstBytes, boolean selfSynchronizing) {
+            this.transitions = transitions;
+            this.instructions = instructions;
+            this.argumentSlots = argumentSlots;
+            this.firstBytes = firstBytes;
+            this.startBytes = startBytes(firstBytes);
+            this.selfSynchronizing = selfSynchronizing;
+        }
+
+        public static InstructionSet of(Instruction... instructions) {
+            return of(Arrays.asList(instructions));
+        }
 
-                while (instructionMatcher.find()) {
-                    String doMatch = instructionMatcher.group(1);
-                    String dontMatch = instructionMatcher.group(2);
-                    String mulMatch = instructionMatcher.group(3);
+        public static InstructionSet of(List<Instruction> instructions) {
+            return new Compiler(instructions).compile();
+        }
 
-                    if (doMatch != null) {
-                        mulEnabled = true;
-                    } else if (dontMatch != null) {
-                        mulEnabled = false;
+        private static byte[] startBytes(boolean[] firstBytes) {
+            int count = 0;
+            byte[] bytes = new byte[256];
+            for (int c = 0; c < 256; c++) {
+                if (firstBytes[c]) {
+                    bytes[count++] = (byte) c;
+                }
+            }
+            return Arrays.copyOf(bytes, count);
+        }
+
+        static boolean isRestart(int entry) {
+            return (entry & RESTART) != 0;
+        }
+
+        private static int entry(int state, int action) {
+            return state | action << ACTION_SHIFT;
+        }
+
+        private static class Compiler {
+            private final List<Instruction> instructions;
+            // Explicit transitions per state, -1 where the failure links decide
+            private final List<int[]> explicit = new ArrayList<>();
+            // Trie children only, used to follow prefixes while computing failure links
+            private final List<int[]> children = new ArrayList<>();
+            private final List<Integer> parents = new ArrayList<>();
+            private final List<Integer> fail = new ArrayList<>();
+            // For states after a prefix: the literal text read since the last digit
+            private final List<String> tails = new ArrayList<>();
+
+            Compiler(List<Instruction> instructions) {
+                if (instructions.isEmpty() || instructions.size() > MAX_INSTRUCTIONS) {
+                    throw new IllegalArgumentException("Need between 1 and " + MAX_INSTRUCTIONS + " instructions");
+                }
+                this.instructions = new ArrayList<>(instructions);
+            }
+
+            InstructionSet compile() {
+                validate();
+                newState(ROOT, null);
+
+                int[] leaves = new int[instructions.size()];
+                int argumentSlots = 0;
+                for (int i = 0; i < instructions.size(); i++) {
+                    leaves[i] = insertPrefix(instructions.get(i).prefix());
+                    argumentSlots = Math.max(argumentSlots, instructions.get(i).arguments().count);
+                }
+                for (int i = 0; i < instructions.size(); i++) {
+                    buildArguments(i, leaves[i]);
+                }
+
+                boolean[] firstBytes = new boolean[256];
+                for (Instruction instruction : instructions) {
+                    firstBytes[instruction.prefix().charAt(0)] = true;
+                }
+
+                return new InstructionSet(complete(), instructions.toArray(new Instruction[0]), argumentSlots,
+                        firstBytes, isSelfSynchronizing(firstBytes));
+            }
+
+            // Rejects sets the failure links can't resolve: a prefix inside another instruction's
+            // literal text would complete while the scanner is busy with the outer instruction
+            private void validate() {
+                for (Instruction instruction : instructions) {
+                    String prefix = instruction.prefix();
+                    if (prefix.isEmpty()) {
+                        throw new IllegalArgumentException("Instruction prefix must not be empty");
                     }
-                    else if (mulMatch != null && mulEnabled) {
-                        int x = Integer.parseInt(instructionMatcher.group(3));
-                        int y = Integer.parseInt(instructionMatcher.group(4));
-                        totalSum += x * y;
+                    for (int i = 0; i < prefix.length(); i++) {
+                        char c = prefix.charAt(i);
+                        if (c > 0xFF || Character.isDigit(c)) {
+                            throw new IllegalArgumentException("Prefix \"" + prefix + "\" must be single-byte text without digits");
+                        }
                     }
+                    for (Instruction other : instructions) {
+                        if (other == instruction) {
+                            continue;
+                        }
+                        Arguments arguments = other.arguments();
+                        if (other.prefix().contains(prefix) || arguments.terminator.contains(prefix)
+                                || (arguments.count > 1 && String.valueOf(arguments.separator).equals(prefix))) {
+                            throw new IllegalArgumentException("Prefix \"" + prefix + "\" overlaps instruction \"" + other + "\"");
+                        }
+                    }
+                }
+            }
+
+            private int newState(int parent, String tail) {
+                if (explicit.size() > STATE_MASK) {
+                    throw new IllegalArgumentException("Instruction set needs too many states");
                 }
+                int[] row = new int[256];
+                Arrays.fill(row, -1);
+                explicit.add(row);
+                int[] trieRow = new int[256];
+                Arrays.fill(trieRow, -1);
+                children.add(trieRow);
+                parents.add(parent);
+                fail.add(ROOT);
+                tails.add(tail);
+                return explicit.size() - 1;
+            }
+
+            private boolean isTrieNode(int state) {
+                return tails.get(state) == null;
+            }
+
+            private int insertPrefix(String prefix) {
+                int node = ROOT;
+                for (int i = 0; i < prefix.length(); i++) {
+                    int c = prefix.charAt(i);
+                    if (children.get(node)[c] < 0) {
+                        int child = newState(node, null);
+                        children.get(node)[c] = child;
+                        explicit.get(node)[c] = entry(child, NONE);
+                    }
+                    node = children.get(node)[c];
+                }
+                return node;
+            }
+
+            // Chains the argument states after a prefix leaf and wires the firing transition
+            private void buildArguments(int index, int leaf) {
+                Instruction instruction = instructions.get(index);
+                Arguments arguments = instruction.arguments();
+                String prefix = instruction.prefix();
+                int fire = entry(ROOT, FIRE + index);
+                int lastByte = prefix.charAt(prefix.length() - 1);
+
+                if (arguments.count == 0) {
+                    if (arguments.terminator.isEmpty()) {
+                        // The prefix is the whole instruction: fire on its last byte
+                        explicit.get(parents.get(leaf))[lastByte] = fire;
+                    } else {
+                        literalChain(new int[]{leaf}, prefix, arguments.terminator, fire);
+                    }
+                    return;
+                }
+
+                explicit.get(parents.get(leaf))[lastByte] = entry(leaf, CLEAR);
+                int[] exits = {leaf};
+                for (int arg = 0; arg < arguments.count; arg++) {
+                    exits = digitStates(exits, arg, arguments);
+                    if (arg + 1 < arguments.count) {
+                        int separator = newState(ROOT, String.valueOf(arguments.separator));
+                        for (int exit : exits) {
+                            explicit.get(exit)[arguments.separator] = entry(separator, NONE);
+                        }
+                        exits = new int[]{separator};
+                    }
+                }
+                literalChain(exits, "", arguments.terminator, fire);
+            }
+
+            // States for one number; returns those that have read enough digits to move on
+            private int[] digitStates(int[] from, int arg, Arguments arguments) {
+                boolean unbounded = arguments.maxDigits == Arguments.UNBOUNDED;
+                int length = unbounded ? arguments.minDigits : arguments.maxDigits;
+                int[] states = new int[length];
+                for (int d = 0; d < length; d++) {
+                    states[d] = newState(ROOT, "");
+                }
+
+                int action = DIGIT + arg;
+                for (int digit = '0'; digit <= '9'; digit++) {
+                    for (int state : from) {
+                        explicit.get(state)[digit] = entry(states[0], action);
+                    }
+                    for (int d = 0; d + 1 < length; d++) {
+                        explicit.get(states[d])[digit] = entry(states[d + 1], action);
+                    }
+                    if (unbounded) {
+                        explicit.get(states[length - 1])[digit] = entry(states[length - 1], action);
+                    }
+                }
+                return Arrays.copyOfRange(states, arguments.minDigits - 1, length);
+            }
+
+            // Reads literal from the given states, firing on its last byte
+            private void literalChain(int[] from, String textBefore, String literal, int fire) {
+                for (int i = 0; i < literal.length(); i++) {
+                    int target = i + 1 == literal.length()
+                            ? fire
+                            : entry(newState(ROOT, textBefore + literal.substring(0, i + 1)), NONE);
+                    for (int state : from) {
+                        explicit.get(state)[literal.charAt(i)] = target;
+                    }
+                    from = new int[]{target & STATE_MASK};
+                }
+            }
+
+            private int[] complete() {
+                int states = explicit.size();
+                int[] table = new int[states << 8];
+
+                // Trie nodes in BFS order, so every failure target is done before its users
+                List<Integer> order = new ArrayList<>();
+                Deque<Integer> queue = new ArrayDeque<>();
+                queue.add(ROOT);
+                while (!queue.isEmpty()) {
+                    int node = queue.poll();
+                    order.add(node);
+                    for (int c = 0; c < 256; c++) {
+                        int child = children.get(node)[c];
+                        if (child >= 0) {
+                            fail.set(child, node == ROOT ? ROOT : trieStep(fail.get(node), c));
+                            queue.add(child);
+                        }
+                    }
+                }
+                // Argument states fall back to wherever their literal tail leads in the trie
+                for (int state = 0; state < states; state++) {
+                    if (!isTrieNode(state)) {
+                        int node = ROOT;
+                        String tail = tails.get(state);
+                        for (int i = 0; i < tail.length(); i++) {
+                            node = trieStep(node, tail.charAt(i));
+                        }
+                        fail.set(state, node);
+                        order.add(state);
+                    }
+                }
+
+                for (int state : order) {
+                    int[] row = explicit.get(state);
+                    for (int c = 0; c < 256; c++) {
+                        if (row[c] >= 0) {
+                            table[state << 8 | c] = row[c];
+                        } else if (state == ROOT) {
+                            table[c] = entry(ROOT, NONE);
+                        } else {
+                            table[state << 8 | c] = table[fail.get(state) << 8 | c] | RESTART;
+                        }
+                    }
+                }
+                return table;
+            }
+
+            private int trieStep(int node, int c) {
+                while (children.get(node)[c] < 0 && node != ROOT) {
+                    node = fail.get(node);
+                }
+                return Math.max(ROOT, children.get(node)[c]);
+            }
+
+            private boolean isSelfSynchronizing(boolean[] firstBytes) {
+                for (Instruction instruction : instructions) {
+                    Arguments arguments = instruction.arguments();
+                    String rest = instruction.prefix().substring(1) + arguments.terminator
+                            + (arguments.count > 1 ? String.valueOf(arguments.separator) : "");
+                    for (int i = 0; i < rest.length(); i++) {
+                        if (firstBytes[rest.charAt(i)]) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
             }
         }
+    }
 
-        System.out.println("Total Sum of Enabled Multiplications (Day 3, Part 2): " + totalSum +"\n");
+    // Resumable: state and partial operands survive between scan calls. An optional second
+    // accumulator replays every instruction under the opposite starting enabled state.
+    // Outside an instruction, every byte that can't start one leaves the automaton at the
+    // root, so the prefilter skips straight to the next candidate start byte.
+    static class Scanner {
+        final Accumulator accumulator;
+        final Accumulator alternate;
+        private final Instruction[] instructions;
+        private final int[] transitions;
+        private final byte[] startBytes;
+        boolean prefilter = VECTOR_PREFILTER;
+        private final long[] args;
+        private int state = InstructionSet.ROOT;
+
+        Scanner(InstructionSet instructions) {
+            this(instructions, new Accumulator(true), null);
+        }
+
+        Scanner(InstructionSet instructions, Accumulator accumulator, Accumulator alternate) {
+            this.instructions = instructions.instructions;
+            this.transitions = instructions.transitions;
+            this.startBytes = instructions.startBytes;
+            this.args = new long[Math.max(1, instructions.argumentSlots)];
+            this.accumulator = accumulator;
+            this.alternate = alternate;
+        }
+
+        boolean inInstruction() {
+            return state != InstructionSet.ROOT;
+        }
+
+        void scan(ByteBuffer buffer, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (prefilter && state == InstructionSet.ROOT) {
+                    i = VectorPrefilter.nextCandidate(buffer, i, to, startBytes);
+                    if (i == to) {
+                        return;
+                    }
+                }
+                step(buffer.get(i) & 0xFF);
+            }
+        }
+
+        // Feeds bytes only while they continue an instruction that is already under way and
+        // returns the index where that instruction ended, or to if it is still unfinished
+        int finishInstruction(ByteBuffer buffer, int from, int to) {
+            int i = from;
+            while (i < to && state != InstructionSet.ROOT) {
+                int c = buffer.get(i) & 0xFF;
+                if (InstructionSet.isRestart(transitions[state << 8 | c])) {
+                    // The byte can only start a new instruction, which belongs to whoever owns it
+                    state = InstructionSet.ROOT;
+                    return i;
+                }
+                step(c);
+                i++;
+            }
+            return i;
+        }
+
+        private void step(int c) {
+            int entry = transitions[state << 8 | c];
+            state = entry & InstructionSet.STATE_MASK;
+
+            int action = entry >>> InstructionSet.ACTION_SHIFT;
+            if (action == InstructionSet.NONE) {
+                return;
+            }
+            if (action == InstructionSet.CLEAR) {
+                Arrays.fill(args, 0);
+            } else if (action < InstructionSet.FIRE) {
+                int arg = action - InstructionSet.DIGIT;
+                args[arg] = args[arg] * 10 + (c - '0');
+            } else {
+                Instruction instruction = instructions[action - InstructionSet.FIRE];
+                instruction.execute(accumulator, args);
+                if (alternate != null) {
+                    instruction.execute(alternate, args);
+                }
+            }
+        }
+    }
+
+    // Compares a whole vector of input bytes against each start byte at once; the first set
+    // lane of the combined mask is the next offset worth handing to the automaton
+    static class VectorPrefilter {
+        private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+        // Index of the first byte in [from, to) that is one of startBytes, or to if none is
+        static int nextCandidate(ByteBuffer buffer, int from, int to, byte[] startBytes) {
+            int lanes = SPECIES.length();
+            int i = from;
+            for (; i + lanes <= to; i += lanes) {
+                ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, buffer, i, buffer.order());
+                VectorMask<Byte> candidates = bytes.compare(VectorOperators.EQ, startBytes[0]);
+                for (int b = 1; b < startBytes.length; b++) {
+                    candidates = candidates.or(bytes.compare(VectorOperators.EQ, startBytes[b]));
+                }
+                if (candidates.anyTrue()) {
+                    return i + candidates.firstTrue();
+                }
+            }
+            for (; i < to; i++) {
+                byte c = buffer.get(i);
+                for (byte start : startBytes) {
+                    if (c == start) {
+                        return i;
+                    }
+                }
+            }
+            return to;
+        }
+    }
+
+    // =============================
+    // PARALLEL SCAN
+    // =============================
+    // Each chunk is scanned from the root with two accumulators, one assuming mul starts
+    // enabled and one assuming it starts disabled. A chunk owns the instructions that begin
+    // inside it: at its end it keeps reading only to finish an instruction already under way,
+    // and a chunk that starts mid-instruction can't match anything there, since no instruction
+    // contains the first byte of another after its own first byte. A prefix pass over the
+    // chunks then picks the hypothesis that matches the state the previous chunk ended in.
+    // Instruction sets without that property are scanned sequentially.
+
+    static class ChunkScan extends RecursiveTask<Scanner> {
+        static final long CHUNK_SIZE = 16L << 20;
+        private static final int OVERHANG = 4096;
+
+        private final FileChannel channel;
+        private final InstructionSet instructions;
+        // This chunk's bytes, a slice of a window mapped once for all chunks in it
+        private final ByteBuffer chunk;
+        // File position just past the chunk
+        private final long end;
+        // Per-thread heap buffer for reading past the chunk to finish a straddling instruction
+        private final ThreadLocal<ByteBuffer> overhang;
+
+        private ChunkScan(FileChannel channel, InstructionSet instructions, ByteBuffer chunk, long end,
+                          ThreadLocal<ByteBuffer> overhang) {
+            this.channel = channel;
+            this.instructions = instructions;
+            this.chunk = chunk;
+            this.end = end;
+            this.overhang = overhang;
+        }
+
+        static Accumulator scanFile(Path path, InstructionSet instructions, long chunkSize) throws IOException {
+            if (!instructions.selfSynchronizing) {
+                return Day3.scanFile(path, instructions);
+            }
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                ThreadLocal<ByteBuffer> overhang = ThreadLocal.withInitial(() -> ByteBuffer.allocate(OVERHANG));
+                List<ChunkScan> chunks = new ArrayList<>();
+                // One mapping per window however small the chunks are; mappings are only
+                // released by GC, and the process may hold just vm.max_map_count of them
+                for (long windowStart = 0; windowStart < size; windowStart += MAP_WINDOW) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart,
+                            Math.min(MAP_WINDOW, size - windowStart));
+                    for (long offset = 0; offset < window.limit(); offset += chunkSize) {
+                        int length = (int) Math.min(chunkSize, window.limit() - offset);
+                        chunks.add(new ChunkScan(channel, instructions, window.slice((int) offset, length),
+                                windowStart + offset + length, overhang));
+                    }
+                }
+
+                try {
+                    ForkJoinTask.invokeAll(chunks);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+
+                Accumulator result = new Accumulator(true);
+                for (ChunkScan chunk : chunks) {
+                    Scanner scanner = chunk.join();
+                    Accumulator taken = result.enabled ? scanner.accumulator : scanner.alternate;
+                    result.total += taken.total;
+                    result.enabledTotal += taken.enabledTotal;
+                    result.enabled = taken.enabled;
+                }
+                return result;
+            }
+        }
+
+        @Override
+        protected Scanner compute() {
+            try {
+                Scanner scanner = new Scanner(instructions, new Accumulator(true), new Accumulator(false));
+                scanner.scan(chunk, 0, chunk.limit());
+
+                // Finish an instruction that straddles the end, reading further if it is long
+                ByteBuffer tail = null;
+                for (long pos = end; scanner.inInstruction(); ) {
+                    if (tail == null) {
+                        tail = overhang.get();
+                    }
+                    tail.clear();
+                    int read = channel.read(tail, pos);
+                    if (read <= 0) {
+                        break;
+                    }
+                    scanner.finishInstruction(tail, 0, read);
+                    pos += read;
+                }
+                return scanner;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
@@ -1,14 +1,51 @@
 package org.aoc.days;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Day4 {
     private final String filePath;
+    // Count horizontal bands of the grid on the fork/join pool
+    private final boolean parallel;
+
+    static final int[][] DIRECTIONS = {
+            {0, 1},  // Right
+            {1, 0},  // Down
+            {1, 1},  // Diagonal down-right
+            {-1, 1}, // Diagonal up-right
+            {0, -1}, // Left
+            {-1, 0}, // Up
+            {-1, -1}, // Diagonal up-left
+            {1, -1}  // Diagonal down-left
+    };
+
+    // Two MAS diagonals crossing on their A, each read in either direction
+    static final Stencil X_MAS = Stencil.of(
+            "M.S",
+            ".A.",
+            "M.S").withRotations();
 
     public Day4(String filePath) {
+        this(filePath, false);
+    }
+
+    public Day4(String filePath, boolean parallel) {
         this.filePath = filePath;
+        this.parallel = parallel;
     }
 
     public int runPart(int part) throws IOException {
@@ -23,100 +60,724 @@ public class Day4 {
     }
 
     public int part1() throws IOException {
-        int count = 0;
-        String word = "XMAS";
-        char[][] grid;
+        byte[][] grid = readRows(Files.readAllBytes(Paths.get(filePath)));
+        int count = Math.toIntExact(parallel
+                ? BandSearch.count(grid, "XMAS", null, BandSearch.BAND_ROWS)[0]
+                : Bitboard.of(grid).count("XMAS"));
+
+        System.out.println("Part 1: " + count);
+        return count; // Return the result instead of printing
+    }
+
+    public int part2() throws IOException {
+        byte[][] grid = readRows(Files.readAllBytes(Paths.get(filePath)));
+
+        // Count the X-MAS patterns in all four orientations of:
+        // M-S
+        //  A
+        // M-S
+        int count = Math.toIntExact(parallel
+                ? BandSearch.count(grid, null, X_MAS, BandSearch.BAND_ROWS)[1]
+                : Bitboard.of(grid).count(X_MAS));
+
+        System.out.println("Part 2: " + count);
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            grid = reader.lines().map(String::toCharArray).toArray(char[][]::new);
+        return count;
+    }
+
+    // Placements of any orientation of the stencil in the grid
+    public long countStencil(Stencil stencil) throws IOException {
+        return Bitboard.parse(Files.readAllBytes(Paths.get(filePath))).count(stencil);
+    }
+
+    // Occurrences of every word in all eight directions, from one pass over each line of the grid
+    public Map<String, Long> countWords(Collection<String> words) throws IOException {
+        WordSearch search = new WordSearch(words);
+        long[] counts = search.count(readRows(Files.readAllBytes(Paths.get(filePath))));
+
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            result.put(search.words.get(i), counts[i]);
         }
+        return result;
+    }
 
-        int rows = grid.length;
-        int cols = grid[0].length;
+    // Rows end at '\n' (optionally preceded by '\r')
+    static byte[][] readRows(byte[] bytes) {
+        List<byte[]> rows = new ArrayList<>();
+        for (int start = 0; start < bytes.length; ) {
+            int end = start;
+            while (end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+            int trimmed = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+            rows.add(Arrays.copyOfRange(bytes, start, trimmed));
+            start = end + 1;
+        }
+        return rows.toArray(new byte[0][]);
+    }
 
-        int[][] directions = {
-                {0, 1},  // Right
-                {1, 0},  // Down
-                {1, 1},  // Diagonal down-right
-                {-1, 1}, // Diagonal up-right
-                {0, -1}, // Left
-                {-1, 0}, // Up
-                {-1, -1}, // Diagonal up-left
-                {1, -1}  // Diagonal down-left
-        };
+    // =============================
+    // BITBOARD
+    // =============================
+    // One bitset per letter: bit c of row r is set when grid[r][c] holds that letter, with each
+    // row padded to whole 64-bit words. A word starts at (r, c) in direction (dr, dc) exactly
+    // when, for every i, row r + i*dr of the plane for word[i] has bit c + i*dc set. Shifting
+    // each of those rows by i*dc and ANDing them tests 64 start columns per operation.
 
-        for (int r = 0; r < rows; r++) {
-            for (int c = 0; c < cols; c++) {
-                for (int[] direction : directions) {
-                    int dr = direction[0], dc = direction[1];
-                    int nr = r, nc = c, i = 0;
-
-                    while (i < word.length() &&
-                            nr >= 0 && nr < rows &&
-                            nc >= 0 && nc < cols &&
-                            grid[nr][nc] == word.charAt(i)) {
-                        nr += dr;
-                        nc += dc;
-                        i++;
+    static class Bitboard {
+        final int rows;
+        final int cols;
+        final int words;
+        // Valid columns of the last word in each row
+        private final long tailMask;
+        // planes[letter][row * words + w], null for letters the grid doesn't contain
+        private final long[][] planes = new long[256][];
+        private final long[] population = new long[256];
+
+        private Bitboard(int rows, int cols) {
+            this.rows = rows;
+            this.cols = cols;
+            this.words = (cols + 63) >>> 6;
+            this.tailMask = (cols & 63) == 0 ? -1L : (1L << (cols & 63)) - 1;
+            Arrays.fill(population, -1);
+        }
+
+        static Bitboard parse(byte[] bytes) {
+            return of(readRows(bytes));
+        }
+
+        // A shorter row leaves the rest of its columns empty
+        static Bitboard of(byte[][] grid) {
+            return of(grid, 0, grid.length, width(grid));
+        }
+
+        // Rows [from, to) of the grid, as rows 0.. of the board
+        static Bitboard of(byte[][] grid, int from, int to, int cols) {
+            Bitboard board = new Bitboard(to - from, cols);
+            for (int r = from; r < to; r++) {
+                for (int c = 0; c < grid[r].length; c++) {
+                    board.set(r - from, c, grid[r][c] & 0xFF);
+                }
+            }
+            return board;
+        }
+
+        static int width(byte[][] grid) {
+            int cols = 0;
+            for (byte[] row : grid) {
+                cols = Math.max(cols, row.length);
+            }
+            return cols;
+        }
+
+        void set(int row, int col, int letter) {
+            if (planes[letter] == null) {
+                planes[letter] = new long[rows * words];
+            }
+            planes[letter][row * words + (col >>> 6)] |= 1L << col;
+        }
+
+        long[] plane(char letter) {
+            return letter < 256 ? planes[letter] : null;
+        }
+
+        // Occurrences of word in all eight directions
+        long count(String word) {
+            return countInRows(word, 0, rows);
+        }
+
+        // Occurrences in all eight directions that start in rows [fromRow, toRow)
+        long countInRows(String word, int fromRow, int toRow) {
+            long count = 0;
+            for (int[] direction : DIRECTIONS) {
+                count += count(word, direction[0], direction[1], fromRow, toRow);
+            }
+            return count;
+        }
+
+        long count(String word, int dr, int dc) {
+            return count(word, dr, dc, 0, rows);
+        }
+
+        long count(String word, int dr, int dc, int fromRow, int toRow) {
+            long[][] letters = new long[word.length()][];
+            for (int i = 0; i < letters.length; i++) {
+                letters[i] = plane(word.charAt(i));
+                if (letters[i] == null) {
+                    return 0;
+                }
+            }
+
+            int span = word.length() - 1;
+            int firstRow = Math.max(fromRow, -dr * span);
+            int lastRow = Math.min(toRow - 1, rows - 1 - Math.max(0, dr * span));
+            long count = 0;
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int w = 0; w < words; w++) {
+                    long starts = mask(w);
+                    for (int i = 0; i < letters.length && starts != 0; i++) {
+                        starts &= shifted(letters[i], r + i * dr, w, i * dc);
                     }
+                    count += Long.bitCount(starts);
+                }
+            }
+            return count;
+        }
+
+        long count(Stencil stencil) {
+            return countInRows(stencil, 0, rows);
+        }
 
-                    if (i == word.length()) {
-                        count++;
+        // Placements of the stencil whose top row lies in [fromRow, toRow)
+        long countInRows(Stencil stencil, int fromRow, int toRow) {
+            return stencil.count(this, fromRow, toRow);
+        }
+
+        // Number of cells holding the letter, so stencils can test their rarest letter first
+        long population(int letter) {
+            if (population[letter] < 0) {
+                long count = 0;
+                if (planes[letter] != null) {
+                    for (long bits : planes[letter]) {
+                        count += Long.bitCount(bits);
                     }
                 }
+                population[letter] = count;
             }
+            return population[letter];
+        }
+
+        long mask(int w) {
+            return w == words - 1 ? tailMask : -1L;
+        }
+
+        // Word w of the given row with every bit c replaced by the bit of column c + k;
+        // columns outside the grid read as zero
+        long shifted(long[] plane, int row, int w, int k) {
+            int bit = (w << 6) + k;
+            int q = bit >> 6;
+            int s = bit & 63;
+            int base = row * words;
+            long low = word(plane, base, q);
+            if (s == 0) {
+                return low;
+            }
+            return (low >>> s) | (word(plane, base, q + 1) << (64 - s));
+        }
+
+        private long word(long[] plane, int base, int q) {
+            return q >= 0 && q < words ? plane[base + q] : 0;
         }
-        System.out.println("Part 1: " + count);
-        return count; // Return the result instead of printing
     }
 
-    public int part2() throws IOException {
-        char[][] grid;
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            // Read the grid into a 2D array
-            grid = reader.lines().map(String::toCharArray).toArray(char[][]::new);
-        }
-
-        int rows = grid.length;
-        int cols = grid[0].length;
-        int count = 0;
-
-        // Iterate through the grid to find X-MAS patterns
-        for (int r = 1; r < rows - 1; r++) {
-            for (int c = 1; c < cols - 1; c++) {
-                // Check for the X-MAS pattern:
-                // M-S
-                //  A
-                // M-S
-                if (grid[r][c] == 'A') {
-                    if (isXMAS(grid, r, c)) {
-                        count++;
+    // =============================
+    // STENCILS
+    // =============================
+    // A 2D pattern of letters and '.' wildcards, optionally with its rotations and reflections.
+    // Orientations that coincide after a symmetry are kept once. Each orientation is stored
+    // as the offsets of its letter cells from the top-left of their bounding box; against a
+    // board it compiles into per-cell planes and offsets ordered by the rarest letter first,
+    // so most 64-column words fail after their first AND. All orientations are tested at each
+    // word of each row in a single pass over the board.
+
+    public static final class Stencil {
+        public static final char WILDCARD = '.';
+
+        // Cells {row, col, letter} of each distinct orientation, sorted by row then column
+        private final List<int[][]> orientations;
+
+        private Stencil(List<int[][]> orientations) {
+            this.orientations = orientations;
+        }
+
+        // Rows may differ in length; missing cells are wildcards
+        public static Stencil of(String... rows) {
+            List<int[]> cells = new ArrayList<>();
+            for (int r = 0; r < rows.length; r++) {
+                for (int c = 0; c < rows[r].length(); c++) {
+                    char letter = rows[r].charAt(c);
+                    if (letter == WILDCARD) {
+                        continue;
+                    }
+                    if (letter >= 256) {
+                        throw new IllegalArgumentException("Stencil letters must be single bytes: " + letter);
                     }
+                    cells.add(new int[]{r, c, letter});
                 }
             }
+            if (cells.isEmpty()) {
+                throw new IllegalArgumentException("Stencil needs at least one letter");
+            }
+            return new Stencil(List.<int[][]>of(normalize(cells.toArray(new int[0][]))));
         }
 
-        System.out.println("Part 2: " + count);
+        // Adds the quarter, half and three-quarter turns of every orientation
+        public Stencil withRotations() {
+            List<int[][]> result = new ArrayList<>(orientations);
+            for (int[][] cells : orientations) {
+                int[][] turned = cells;
+                for (int turn = 0; turn < 3; turn++) {
+                    turned = transform(turned, true, false);
+                    result.add(turned);
+                }
+            }
+            return distinct(result);
+        }
 
-        return count;
+        // Adds the left-right mirror image of every orientation
+        public Stencil withReflections() {
+            List<int[][]> result = new ArrayList<>(orientations);
+            for (int[][] cells : orientations) {
+                result.add(transform(cells, false, true));
+            }
+            return distinct(result);
+        }
+
+        public int orientations() {
+            return orientations.size();
+        }
+
+        // Rows spanned by the tallest orientation
+        int height() {
+            int height = 0;
+            for (int[][] cells : orientations) {
+                height = Math.max(height, cells[cells.length - 1][0] + 1);
+            }
+            return height;
+        }
+
+        // A clockwise quarter turn maps (r, c) to (c, -r), a mirror maps it to (r, -c)
+        private static int[][] transform(int[][] cells, boolean rotate, boolean mirror) {
+            int[][] result = new int[cells.length][];
+            for (int i = 0; i < cells.length; i++) {
+                int r = cells[i][0];
+                int c = cells[i][1];
+                result[i] = rotate ? new int[]{c, -r, cells[i][2]} : new int[]{r, mirror ? -c : c, cells[i][2]};
+            }
+            return normalize(result);
+        }
+
+        private static int[][] normalize(int[][] cells) {
+            int minRow = Integer.MAX_VALUE;
+            int minCol = Integer.MAX_VALUE;
+            for (int[] cell : cells) {
+                minRow = Math.min(minRow, cell[0]);
+                minCol = Math.min(minCol, cell[1]);
+            }
+            int[][] result = new int[cells.length][];
+            for (int i = 0; i < cells.length; i++) {
+                result[i] = new int[]{cells[i][0] - minRow, cells[i][1] - minCol, cells[i][2]};
+            }
+            Arrays.sort(result, Comparator.<int[]>comparingInt(cell -> cell[0]).thenComparingInt(cell -> cell[1]));
+            return result;
+        }
+
+        private static Stencil distinct(List<int[][]> orientations) {
+            Set<String> seen = new LinkedHashSet<>();
+            List<int[][]> result = new ArrayList<>();
+            for (int[][] cells : orientations) {
+                if (seen.add(Arrays.deepToString(cells))) {
+                    result.add(cells);
+                }
+            }
+            return new Stencil(result);
+        }
+
+        long count(Bitboard board, int fromRow, int toRow) {
+            long[][][] planes = new long[orientations.size()][][];
+            int[][][] offsets = new int[orientations.size()][][];
+            int[] heights = new int[orientations.size()];
+            int compiled = 0;
+            for (int[][] cells : orientations) {
+                int[][] ordered = cells.clone();
+                Arrays.sort(ordered, Comparator.comparingLong(cell -> board.population(cell[2])));
+                long[][] cellPlanes = new long[ordered.length][];
+                boolean present = true;
+                for (int i = 0; i < ordered.length && present; i++) {
+                    cellPlanes[i] = board.plane((char) ordered[i][2]);
+                    present = cellPlanes[i] != null;
+                }
+                // A letter the board lacks rules the orientation out entirely
+                if (present) {
+                    planes[compiled] = cellPlanes;
+                    offsets[compiled] = ordered;
+                    heights[compiled++] = cells[cells.length - 1][0] + 1;
+                }
+            }
+
+            long count = 0;
+            for (int r = Math.max(0, fromRow); r < Math.min(toRow, board.rows); r++) {
+                for (int w = 0; w < board.words; w++) {
+                    long mask = board.mask(w);
+                    for (int o = 0; o < compiled; o++) {
+                        if (r + heights[o] > board.rows) {
+                            continue;
+                        }
+                        long[][] cellPlanes = planes[o];
+                        int[][] cells = offsets[o];
+                        long starts = mask;
+                        for (int i = 0; i < cells.length && starts != 0; i++) {
+                            starts &= board.shifted(cellPlanes[i], r + cells[i][0], w, cells[i][1]);
+                        }
+                        count += Long.bitCount(starts);
+                    }
+                }
+            }
+            return count;
+        }
     }
 
-    private boolean isXMAS(char[][] grid, int r, int c) {
-        // Check all valid configurations of the X-MAS pattern
-        return (
-                // Standard X-MAS pattern
-                (grid[r - 1][c - 1] == 'M' && grid[r - 1][c + 1] == 'S' &&
-                        grid[r + 1][c - 1] == 'M' && grid[r + 1][c + 1] == 'S') ||
-                        // Reversed X-MAS pattern
-                        (grid[r - 1][c - 1] == 'S' && grid[r - 1][c + 1] == 'M' &&
-                                grid[r + 1][c - 1] == 'S' && grid[r + 1][c + 1] == 'M') ||
-                        // Left diagonal reversed, right diagonal standard
-                        (grid[r - 1][c - 1] == 'S' && grid[r - 1][c + 1] == 'S' &&
-                                grid[r + 1][c - 1] == 'M' && grid[r + 1][c + 1] == 'M') ||
-                        // Left diagonal standard, right diagonal reversed
-                        (grid[r - 1][c - 1] == 'M' && grid[r - 1][c + 1] == 'M' &&
-                                grid[r + 1][c - 1] == 'S' && grid[r + 1][c + 1] == 'S')
-        );
+    // =============================
+    // PARALLEL BANDS
+    // =============================
+    // The grid splits into horizontal bands, each owning the matches that start (or, for a
+    // stencil, have their top row) in its rows. A band builds its bitboard over its own rows
+    // plus a halo of word.length() - 1 rows on each side, enough for any match it owns to
+    // complete, and counts only starts inside its own rows, so matches crossing a boundary are
+    // counted exactly once. Bands share nothing but the LongAdders their counts go to.
+
+    static class BandSearch extends RecursiveAction {
+        static final int BAND_ROWS = 256;
+
+        private final byte[][] grid;
+        private final int cols;
+        private final String word;
+        private final Stencil stencil;
+        private final int from;
+        private final int to;
+        private final int bandRows;
+        private final LongAdder occurrences;
+        private final LongAdder placements;
+
+        private BandSearch(byte[][] grid, int cols, String word, Stencil stencil, int from, int to, int bandRows,
+                           LongAdder occurrences, LongAdder placements) {
+            this.grid = grid;
+            this.cols = cols;
+            this.word = word;
+            this.stencil = stencil;
+            this.from = from;
+            this.to = to;
+            this.bandRows = bandRows;
+            this.occurrences = occurrences;
+            this.placements = placements;
+        }
+
+        // {occurrences of word, placements of stencil}; a null word or stencil skips that count
+        static long[] count(byte[][] grid, String word, Stencil stencil, int bandRows) {
+            LongAdder occurrences = new LongAdder();
+            LongAdder placements = new LongAdder();
+            new BandSearch(grid, Bitboard.width(grid), word, stencil, 0, grid.length, bandRows, occurrences, placements)
+                    .invoke();
+            return new long[]{occurrences.sum(), placements.sum()};
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > bandRows) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BandSearch(grid, cols, word, stencil, from, middle, bandRows, occurrences, placements),
+                        new BandSearch(grid, cols, word, stencil, middle, to, bandRows, occurrences, placements));
+                return;
+            }
+
+            int halo = Math.max(word == null ? 0 : word.length() - 1, stencil == null ? 0 : stencil.height() - 1);
+            int lo = Math.max(0, from - halo);
+            int hi = Math.min(grid.length, to + halo);
+            Bitboard board = Bitboard.of(grid, lo, hi, cols);
+
+            if (word != null) {
+                occurrences.add(board.countInRows(word, from - lo, to - lo));
+            }
+            if (stencil != null) {
+                placements.add(board.countInRows(stencil, from - lo, to - lo));
+            }
+        }
     }
 
+    // =============================
+    // STREAMING
+    // =============================
+    // Counts a grid that arrives one row at a time while holding only the newest rows in a
+    // ring buffer, so memory is O(width * word length) however tall the grid is. When a row
+    // arrives it settles every match that ends in it: horizontal ones inside the row, the
+    // vertical and diagonal ones that start word.length() - 1 rows higher (the word read
+    // downwards, or its reversal for the upward directions), and the X-MAS centered on the
+    // row before it.
+
+    public static class RowStream {
+        private final String word;
+        private final String reversed;
+        private final byte[][] ring;
+        private final int[] lengths;
+        private long rows;
+        private long occurrences;
+        private long xmas;
+
+        public RowStream(String word) {
+            if (word.isEmpty()) {
+                throw new IllegalArgumentException("Word must not be empty");
+            }
+            this.word = word;
+            this.reversed = new StringBuilder(word).reverse().toString();
+            // X-MAS looks at three rows
+            this.ring = new byte[Math.max(word.length(), 3)][];
+            this.lengths = new int[ring.length];
+        }
+
+        // Rows end at '\n' (optionally preceded by '\r'), like readRows
+        public static RowStream consume(InputStream in, String word) throws IOException {
+            RowStream stream = new RowStream(word);
+            byte[] buffer = new byte[1 << 16];
+            byte[] line = new byte[256];
+            int length = 0;
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        stream.accept(line, 0, length > 0 && line[length - 1] == '\r' ? length - 1 : length);
+                        length = 0;
+                    } else {
+                        if (length == line.length) {
+                            line = Arrays.copyOf(line, length * 2);
+                        }
+                        line[length++] = buffer[i];
+                    }
+                }
+            }
+            if (length > 0) {
+                stream.accept(line, 0, line[length - 1] == '\r' ? length - 1 : length);
+            }
+            return stream;
+        }
+
+        public void accept(String row) {
+            byte[] bytes = row.getBytes(StandardCharsets.ISO_8859_1);
+            accept(bytes, 0, bytes.length);
+        }
+
+        public void accept(byte[] bytes, int offset, int length) {
+            int slot = (int) (rows % ring.length);
+            if (ring[slot] == null || ring[slot].length < length) {
+                ring[slot] = new byte[Math.max(length, 16)];
+            }
+            System.arraycopy(bytes, offset, ring[slot], 0, length);
+            lengths[slot] = length;
+            long current = rows++;
+
+            int span = word.length() - 1;
+            for (int c = 0; c < length; c++) {
+                occurrences += matches(word, current, c, 0, 1) + matches(reversed, current, c, 0, 1);
+            }
+            if (current >= span) {
+                long top = current - span;
+                int width = lengths[(int) (top % ring.length)];
+                for (int c = 0; c < width; c++) {
+                    for (int dc = -1; dc <= 1; dc++) {
+                        occurrences += matches(word, top, c, 1, dc) + matches(reversed, top, c, 1, dc);
+                    }
+                }
+            }
+            if (current >= 2) {
+                long center = current - 1;
+                int width = lengths[(int) (center % ring.length)];
+                for (int c = 1; c < width - 1; c++) {
+                    if (isXMAS(center, c)) {
+                        xmas++;
+                    }
+                }
+            }
+        }
+
+        // 1 if key reads from (row, col) in direction (dr, dc) within the buffered rows
+        private int matches(String key, long row, int col, int dr, int dc) {
+            for (int i = 0; i < key.length(); i++, row += dr, col += dc) {
+                if (cell(row, col) != key.charAt(i)) {
+                    return 0;
+                }
+            }
+            return 1;
+        }
+
+        private boolean isXMAS(long r, int c) {
+            if (cell(r, c) != 'A') {
+                return false;
+            }
+            return isMS(cell(r - 1, c - 1), cell(r + 1, c + 1)) && isMS(cell(r - 1, c + 1), cell(r + 1, c - 1));
+        }
+
+        private static boolean isMS(int a, int b) {
+            return (a == 'M' && b == 'S') || (a == 'S' && b == 'M');
+        }
+
+        // -1 outside the row, so it never equals a letter
+        private int cell(long row, int col) {
+            int slot = (int) (row % ring.length);
+            return col >= 0 && col < lengths[slot] ? ring[slot][col] & 0xFF : -1;
+        }
+
+        // Part 1: occurrences of the word in all eight directions so far
+        public long occurrences() {
+            return occurrences;
+        }
+
+        // Part 2: X-MAS shapes whose bottom row has arrived
+        public long xmas() {
+            return xmas;
+        }
+    }
+
+    // =============================
+    // MULTI-WORD SEARCH
+    // =============================
+    // An Aho-Corasick automaton over the words and their reversals. Reading a line forwards
+    // finds the reversed words where the backward reading would find the words, so the four
+    // line families (rows, columns and both diagonals) are each read once, in one direction.
+    // Every cell costs one table step whatever the number of words: the scan only counts
+    // visits per state, and those counts are pushed down the failure links afterwards to
+    // credit every word that ends at a visited state.
+
+    static class WordSearch {
+        final List<String> words;
+        // Dense byte -> letter class map; class 0 is every byte that appears in no word
+        private final int[] classes = new int[256];
+        private final int alphabet;
+        private final int[] transitions;
+        private final int[] fail;
+        // States in BFS order, so a state's failure target always comes before it
+        private final int[] order;
+        // credits[state] lists the word indices credited once per visit of that exact state
+        private final int[][] credits;
+
+        WordSearch(Collection<String> words) {
+            // Duplicates would only split one count between two entries
+            this.words = new ArrayList<>(new LinkedHashSet<>(words));
+
+            int letters = 0;
+            for (String word : this.words) {
+                if (word.isEmpty()) {
+                    throw new IllegalArgumentException("Words must not be empty");
+                }
+                for (int i = 0; i < word.length(); i++) {
+                    char c = word.charAt(i);
+                    if (c < 256 && classes[c] == 0) {
+                        classes[c] = ++letters;
+                    }
+                }
+            }
+            this.alphabet = letters + 1;
+
+            // Trie over the words and their reversals; a palindrome is entered twice, so it is
+            // credited once per direction like any other word
+            List<int[]> children = new ArrayList<>();
+            List<List<Integer>> ends = new ArrayList<>();
+            children.add(new int[alphabet]);
+            ends.add(new ArrayList<>());
+            for (int index = 0; index < this.words.size(); index++) {
+                String word = this.words.get(index);
+                for (String key : new String[]{word, new StringBuilder(word).reverse().toString()}) {
+                    int state = 0;
+                    boolean matchable = true;
+                    for (int i = 0; i < key.length() && matchable; i++) {
+                        char c = key.charAt(i);
+                        if (c >= 256) {
+                            // No byte of the grid can match this letter
+                            matchable = false;
+                        } else {
+                            int next = children.get(state)[classes[c]];
+                            if (next == 0) {
+                                next = children.size();
+                                children.get(state)[classes[c]] = next;
+                                children.add(new int[alphabet]);
+                                ends.add(new ArrayList<>());
+                            }
+                            state = next;
+                        }
+                    }
+                    if (matchable) {
+                        ends.get(state).add(index);
+                    }
+                }
+            }
+
+            int states = children.size();
+            this.transitions = new int[states * alphabet];
+            this.fail = new int[states];
+            this.order = new int[states];
+            this.credits = new int[states][];
+            for (int state = 0; state < states; state++) {
+                credits[state] = ends.get(state).stream().mapToInt(Integer::intValue).toArray();
+            }
+
+            // Root first; a missing edge leads wherever the failure state's edge leads
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                int state = order[head++];
+                for (int c = 0; c < alphabet; c++) {
+                    int child = children.get(state)[c];
+                    if (child != 0) {
+                        fail[child] = state == 0 ? 0 : transitions[fail[state] * alphabet + c];
+                        transitions[state * alphabet + c] = child;
+                        order[tail++] = child;
+                    } else {
+                        transitions[state * alphabet + c] = state == 0 ? 0 : transitions[fail[state] * alphabet + c];
+                    }
+                }
+            }
+        }
+
+        // Counts of each word over all eight directions of the grid; short rows end early
+        long[] count(byte[][] grid) {
+            long[] visits = new long[fail.length];
+            int rows = grid.length;
+            int cols = 0;
+            for (byte[] row : grid) {
+                cols = Math.max(cols, row.length);
+            }
+
+            for (int r = 0; r < rows; r++) {
+                scanLine(grid, cols, r, 0, 0, 1, visits);
+            }
+            for (int c = 0; c < cols; c++) {
+                scanLine(grid, cols, 0, c, 1, 0, visits);
+            }
+            // Diagonals down-right start on the left column or the top row, up-right ones on
+            // the left column or the bottom row
+            for (int r = rows - 1; r > 0; r--) {
+                scanLine(grid, cols, r, 0, 1, 1, visits);
+            }
+            for (int c = 0; c < cols; c++) {
+                scanLine(grid, cols, 0, c, 1, 1, visits);
+            }
+            for (int r = 0; r < rows - 1; r++) {
+                scanLine(grid, cols, r, 0, -1, 1, visits);
+            }
+            for (int c = 0; c < cols; c++) {
+                scanLine(grid, cols, rows - 1, c, -1, 1, visits);
+            }
+
+            // A visit to a state is also a visit to every state on its failure chain
+            for (int i = order.length - 1; i > 0; i--) {
+                visits[fail[order[i]]] += visits[order[i]];
+            }
+            long[] counts = new long[words.size()];
+            for (int state = 1; state < visits.length; state++) {
+                for (int index : credits[state]) {
+                    counts[index] += visits[state];
+                }
+            }
+            return counts;
+        }
+
+        private void scanLine(byte[][] grid, int cols, int r, int c, int dr, int dc, long[] visits) {
+            int state = 0;
+            for (; r >= 0 && r < grid.length && c < cols; r += dr, c += dc) {
+                byte[] row = grid[r];
+                // Cells past the end of a short row break the line like any foreign byte
+                int letter = c < row.length ? classes[row[c] & 0xFF] : 0;
+                state = transitions[state * alphabet + letter];
+                visits[state]++;
+            }
+        }
+    }
 }
@@ -3,13 +3,26 @@ package org.aoc.days;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.RecursiveTask;
 
 public class Day5 {
     private final String filePath;
+    // Check and reorder updates on the fork/join pool
+    private final boolean parallel;
+    // Both parts come out of one pass, so the second part reuses the first one's work
+    private Answers answers;
 
     public Day5(String filePath) {
+        this(filePath, false);
+    }
+
+    public Day5(String filePath, boolean parallel) {
         this.filePath = filePath;
+        this.parallel = parallel;
     }
 
     public int runPart(int part) throws IOException {
@@ -24,47 +37,38 @@ public class Day5 {
     }
 
     public int part1() throws IOException {
-        // Parse input data
-        InputData inputData = parseInputData(filePath);
-
-        int sumOfMiddlePages = 0;
-
-        // Check each update
-        for (List<Integer> update : inputData.updates) {
-            if (isCorrectOrder(update, inputData.precedenceMap)) {
-                int middlePage = findMiddlePage(update);
-                sumOfMiddlePages += middlePage;
-            }
-        }
+        int sumOfMiddlePages = Math.toIntExact(solve().correctMiddleSum);
 
         System.out.println("Sum of middle pages: " + sumOfMiddlePages);
         return sumOfMiddlePages;
     }
 
     public int part2() throws IOException {
-        // Parse input data
-        InputData inputData = parseInputData(filePath);
-
-        int sumOfMiddlePages = 0;
+        int sumOfMiddlePages = Math.toIntExact(solve().reorderedMiddleSum);
 
-        for (List<Integer> update : inputData.updates) {
-            if (!isCorrectOrder(update, inputData.precedenceMap)) {
-                // Reorder the update using topological sort
-                List<Integer> reorderedUpdate = reorderPages(update, inputData.precedenceMap);
+        System.out.println("Sum of middle pages after reordering: " + sumOfMiddlePages);
+        return sumOfMiddlePages;
+    }
 
-                // Find and sum the middle page
-                int middlePage = findMiddlePage(reorderedUpdate);
-                sumOfMiddlePages += middlePage;
+    public Answers solve() throws IOException {
+        if (answers == null) {
+            if (parallel) {
+                // Parse input data
+                InputData inputData = parseInputData(filePath);
+                long[] sums = UpdateScan.run(inputData.rules, inputData.updates);
+                answers = new Answers(sums[0], sums[1]);
+            } else {
+                try (InputStream in = Files.newInputStream(Paths.get(filePath))) {
+                    answers = stream(in);
+                }
             }
         }
-
-        System.out.println("Sum of middle pages after reordering: " + sumOfMiddlePages);
-        return sumOfMiddlePages;
+        return answers;
     }
 
     private InputData parseInputData(String filePath) throws IOException {
         List<String> orderingRules = new ArrayList<>();
-        List<List<Integer>> updates = new ArrayList<>();
+        List<int[]> updates = new ArrayList<>();
 
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             boolean readingRules = true;
@@ -80,118 +84,625 @@ public class Day5 {
                     orderingRules.add(line.trim());
                 } else {
                     String[] pages = line.trim().split(",");
-                    List<Integer> update = new ArrayList<>();
-                    for (String page : pages) {
-                        update.add(Integer.parseInt(page));
+                    int[] update = new int[pages.length];
+                    for (int i = 0; i < pages.length; i++) {
+                        update[i] = Integer.parseInt(pages[i]);
                     }
                     updates.add(update);
                 }
             }
         }
 
-        // Parse rules into a precedence map
-        Map<Integer, Set<Integer>> precedenceMap = new HashMap<>();
+        // Parse rules into the compiled matrix
+        List<int[]> pairs = new ArrayList<>();
         for (String rule : orderingRules) {
             String[] parts = rule.split("\\|");
             int x = Integer.parseInt(parts[0]);
             int y = Integer.parseInt(parts[1]);
-
-            precedenceMap.putIfAbsent(x, new HashSet<>());
-            precedenceMap.get(x).add(y);
+            pairs.add(new int[]{x, y});
         }
 
-        return new InputData(precedenceMap, updates);
+        return new InputData(Rules.compile(pairs), updates);
     }
 
-    private boolean isCorrectOrder(List<Integer> update, Map<Integer, Set<Integer>> precedenceMap) {
-        Set<Integer> pagesInUpdate = new HashSet<>(update);
+    private static class InputData {
+        Rules rules;
+        List<int[]> updates;
 
-        for (int i = 0; i < update.size(); i++) {
-            int currentPage = update.get(i);
+        InputData(Rules rules, List<int[]> updates) {
+            this.rules = rules;
+            this.updates = updates;
+        }
+    }
 
-            if (precedenceMap.containsKey(currentPage)) {
-                for (int requiredAfter : precedenceMap.get(currentPage)) {
-                    if (pagesInUpdate.contains(requiredAfter) && update.indexOf(requiredAfter) < i) {
-                        return false; // Rule violated
+    // Compiles the rules section, then settles each update as its line is read, so memory is
+    // bounded by the rules and the longest update however many updates follow
+    public static Answers stream(InputStream in) throws IOException {
+        List<int[]> pairs = new ArrayList<>();
+        Rules rules = null;
+        Rules.Scratch scratch = null;
+        int[] update = new int[64];
+        int length = 0;
+        long correctMiddleSum = 0;
+        long reorderedMiddleSum = 0;
+
+        // The number being read, -1 between numbers
+        int number = -1;
+        int first = -1;
+        // Like parseInputData, only an empty line (ignoring '\r') separates the sections, and
+        // whitespace is allowed around a line's content but not inside it
+        boolean blank = true;
+        boolean started = false;
+        boolean ended = false;
+        byte[] buffer = new byte[1 << 16];
+        // Offset of buffer[0] in the input, for error messages
+        long offset = 0;
+        boolean done = false;
+        while (!done) {
+            int read = in.read(buffer);
+            // The end of the input ends the last line too
+            if (read < 0) {
+                buffer[0] = '\n';
+                read = 1;
+                done = true;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer[i];
+                long position = offset + i;
+                if (b == '\n') {
+                    if (rules == null) {
+                        if (blank) {
+                            // The blank line: the rules are complete
+                            rules = Rules.compile(pairs);
+                            scratch = rules.newScratch();
+                            pairs = null;
+                        } else if (first < 0 || number < 0) {
+                            throw new NumberFormatException("Malformed rule at byte " + position);
+                        } else {
+                            pairs.add(new int[]{first, number});
+                        }
+                    } else if (!blank) {
+                        if (number >= 0) {
+                            update = append(update, length++, number);
+                        } else if (length == 0) {
+                            throw new NumberFormatException("Malformed page number at byte " + position);
+                        }
+                        if (rules.isCorrectOrder(update, length, scratch)) {
+                            correctMiddleSum += update[length / 2];
+                        } else {
+                            reorderedMiddleSum += rules.reorderedMiddle(update, length, scratch);
+                        }
                     }
+                    first = -1;
+                    number = -1;
+                    length = 0;
+                    blank = true;
+                    started = false;
+                    ended = false;
+                } else if (b == ' ' || b == '\t' || b == '\r') {
+                    ended = started;
+                    blank &= b == '\r';
+                } else if (ended) {
+                    throw new NumberFormatException("Malformed page number at byte " + position);
+                } else {
+                    blank = false;
+                    started = true;
+                    if (b >= '0' && b <= '9') {
+                        long value = (number < 0 ? 0L : number * 10L) + (b - '0');
+                        if (value > Integer.MAX_VALUE) {
+                            throw new NumberFormatException("Page number out of range at byte " + position);
+                        }
+                        number = (int) value;
+                    } else if (b == '|' && rules == null && first < 0 && number >= 0) {
+                        first = number;
+                        number = -1;
+                    } else if (b == ',' && rules != null && number >= 0) {
+                        update = append(update, length++, number);
+                        number = -1;
+                    } else if (b == '|' || b == ',') {
+                        throw new NumberFormatException("Malformed " + (rules == null ? "rule" : "update")
+                                + " at byte " + position);
+                    } else {
+                        throw new NumberFormatException("Malformed page number at byte " + position);
+                    }
+                }
+            }
+            offset += read;
+        }
+        return new Answers(correctMiddleSum, reorderedMiddleSum);
+    }
+
+    private static int[] append(int[] update, int length, int page) {
+        if (length == update.length) {
+            update = Arrays.copyOf(update, length * 2);
+        }
+        update[length] = page;
+        return update;
+    }
+
+    // A live view of the sums that follows rule changes without re-reading the input
+    public Incremental toIncremental() throws IOException {
+        InputData inputData = parseInputData(filePath);
+        return new Incremental(inputData.rules, inputData.updates);
+    }
+
+    public static class Answers {
+        // Part 1: middle pages of the updates already in order
+        public final long correctMiddleSum;
+        // Part 2: middle pages of the other updates once reordered
+        public final long reorderedMiddleSum;
+
+        Answers(long correctMiddleSum, long reorderedMiddleSum) {
+            this.correctMiddleSum = correctMiddleSum;
+            this.reorderedMiddleSum = reorderedMiddleSum;
+        }
+    }
+
+    // =============================
+    // PARALLEL SCAN
+    // =============================
+    // Updates are independent once the rules are compiled, and Rules is never written after
+    // compile, so every worker reads the same matrix. The mutable part is the scratch, one per
+    // worker thread. Each leaf settles both parts for its slice of updates and the two sums
+    // are added up on the way back through the joins.
+
+    static class UpdateScan extends RecursiveTask<long[]> {
+        private static final int THRESHOLD = 512;
+
+        private final Rules rules;
+        private final List<int[]> updates;
+        private final int from;
+        private final int to;
+        private final ThreadLocal<Rules.Scratch> scratch;
+
+        private UpdateScan(Rules rules, List<int[]> updates, int from, int to, ThreadLocal<Rules.Scratch> scratch) {
+            this.rules = rules;
+            this.updates = updates;
+            this.from = from;
+            this.to = to;
+            this.scratch = scratch;
+        }
+
+        static long[] run(Rules rules, List<int[]> updates) {
+            return new UpdateScan(rules, updates, 0, updates.size(), ThreadLocal.withInitial(rules::newScratch)).invoke();
+        }
+
+        // {middle pages of correct updates, middle pages of reordered ones} over [from, to)
+        static long[] scan(Rules rules, List<int[]> updates, int from, int to, Rules.Scratch scratch) {
+            long[] sums = new long[2];
+            for (int i = from; i < to; i++) {
+                int[] update = updates.get(i);
+                if (rules.isCorrectOrder(update, update.length, scratch)) {
+                    sums[0] += update[update.length / 2];
+                } else {
+                    // Only the middle of the reordered update matters, so select it directly
+                    sums[1] += rules.reorderedMiddle(update, update.length, scratch);
                 }
             }
+            return sums;
         }
 
-        return true;
+        @Override
+        protected long[] compute() {
+            if (to - from <= THRESHOLD) {
+                return scan(rules, updates, from, to, scratch.get());
+            }
+            int middle = (from + to) >>> 1;
+            UpdateScan left = new UpdateScan(rules, updates, from, middle, scratch);
+            left.fork();
+            long[] sums = new UpdateScan(rules, updates, middle, to, scratch).compute();
+            long[] leftSums = left.join();
+            sums[0] += leftSums[0];
+            sums[1] += leftSums[1];
+            return sums;
+        }
     }
 
-    private List<Integer> reorderPages(List<Integer> update, Map<Integer, Set<Integer>> precedenceMap) {
-        Set<Integer> pagesInUpdate = new HashSet<>(update);
-
-        // Filter rules to only include relevant pages
-        Map<Integer, Set<Integer>> filteredMap = new HashMap<>();
-        for (int page : pagesInUpdate) {
-            if (precedenceMap.containsKey(page)) {
-                Set<Integer> filteredSet = new HashSet<>();
-                for (int dependentPage : precedenceMap.get(page)) {
-                    if (pagesInUpdate.contains(dependentPage)) {
-                        filteredSet.add(dependentPage);
+    // =============================
+    // INCREMENTAL
+    // =============================
+    // Keeps both sums up to date while rules come and go. A rule X|Y can only change the
+    // outcome of updates holding both X and Y, so an inverted index from page to the updates
+    // containing it (sorted update numbers per page) finds them with one merge of two lists.
+    // Each of those updates is checked again, and its old middle page is swapped for the new
+    // one in whichever sum it belongs to now.
+
+    public static class Incremental {
+        private final List<int[]> updates;
+        // Where each update's middle page currently counts, and its value
+        private final boolean[] correct;
+        private final int[] middles;
+        // postings[page] lists, in increasing order, the updates that contain the page; only
+        // pages inside the rule matrix are indexed, the others can't affect any order
+        private int[][] postings;
+        private Rules rules;
+        private Rules.Scratch scratch;
+        private long correctMiddleSum;
+        private long reorderedMiddleSum;
+
+        Incremental(Rules rules, List<int[]> updates) {
+            this.updates = updates;
+            this.correct = new boolean[updates.size()];
+            this.middles = new int[updates.size()];
+            this.rules = rules.resized(rules.pages);
+            this.scratch = this.rules.newScratch();
+            index();
+
+            for (int u = 0; u < updates.size(); u++) {
+                settle(u, false);
+            }
+        }
+
+        // Rebuilds the postings for every page the rule matrix covers
+        private void index() {
+            int pages = rules.pages;
+            int[] sizes = new int[pages];
+            int[] last = new int[pages];
+            Arrays.fill(last, -1);
+            for (int u = 0; u < updates.size(); u++) {
+                for (int page : updates.get(u)) {
+                    if (page >= 0 && page < pages && last[page] != u) {
+                        last[page] = u;
+                        sizes[page]++;
                     }
                 }
-                if (!filteredSet.isEmpty()) {
-                    filteredMap.put(page, filteredSet);
+            }
+            postings = new int[pages][];
+            for (int page = 0; page < pages; page++) {
+                postings[page] = new int[sizes[page]];
+            }
+            Arrays.fill(sizes, 0);
+            Arrays.fill(last, -1);
+            for (int u = 0; u < updates.size(); u++) {
+                for (int page : updates.get(u)) {
+                    if (page >= 0 && page < pages && last[page] != u) {
+                        last[page] = u;
+                        postings[page][sizes[page]++] = u;
+                    }
                 }
             }
         }
 
-        // Perform topological sort
-        List<Integer> sortedPages = new ArrayList<>();
-        Set<Integer> visited = new HashSet<>();
-        Set<Integer> visiting = new HashSet<>();
+        public void addRule(int x, int y) {
+            change(x, y, true);
+        }
 
-        for (int page : update) {
-            if (!visited.contains(page)) {
-                if (!topologicalSort(page, filteredMap, visited, visiting, sortedPages)) {
-                    throw new RuntimeException("Cycle detected in precedence rules!");
+        public void removeRule(int x, int y) {
+            if (!rules.mustPrecede(x, y)) {
+                throw new IllegalArgumentException("Rule not present: " + x + "|" + y);
+            }
+            change(x, y, false);
+        }
+
+        private void change(int x, int y, boolean present) {
+            if (x < 0 || y < 0) {
+                throw new IllegalArgumentException("Page ID out of range: " + Math.min(x, y));
+            }
+            if (rules.mustPrecede(x, y) == present) {
+                return;
+            }
+            int needed = Math.max(x, y) + 1;
+            if (needed > rules.pages) {
+                // Grow geometrically so a run of new pages rebuilds the index only a few times;
+                // resized() rejects pages past MAX_PAGE before anything changes
+                rules = rules.resized(Math.max(needed, Math.min(Rules.MAX_PAGE, rules.pages * 2)));
+                // The scratch bitsets must cover the wider rows
+                scratch = rules.newScratch();
+                index();
+            }
+            rules.set(x, y, present);
+            try {
+                resettle(x, y);
+            } catch (RuntimeException e) {
+                // A rule that closes a cycle is rolled back, along with the updates already redone
+                rules.set(x, y, !present);
+                resettle(x, y);
+                throw e;
+            }
+        }
+
+        // Redoes every update that contains both pages
+        private void resettle(int x, int y) {
+            int[] xs = postings[x];
+            int[] ys = postings[y];
+            for (int i = 0, j = 0; i < xs.length && j < ys.length; ) {
+                if (xs[i] < ys[j]) {
+                    i++;
+                } else if (xs[i] > ys[j]) {
+                    j++;
+                } else {
+                    settle(xs[i], true);
+                    i++;
+                    j++;
                 }
             }
         }
 
-        return sortedPages;
+        // The new middle page is found before the sums change, so a cycle leaves them untouched
+        private void settle(int u, boolean settled) {
+            int[] update = updates.get(u);
+            boolean inOrder = rules.isCorrectOrder(update, update.length, scratch);
+            int middle = inOrder ? update[update.length / 2] : rules.reorderedMiddle(update, update.length, scratch);
+            if (settled) {
+                unsettle(u);
+            }
+            correct[u] = inOrder;
+            middles[u] = middle;
+            if (inOrder) {
+                correctMiddleSum += middle;
+            } else {
+                reorderedMiddleSum += middle;
+            }
+        }
+
+        private void unsettle(int u) {
+            if (correct[u]) {
+                correctMiddleSum -= middles[u];
+            } else {
+                reorderedMiddleSum -= middles[u];
+            }
+        }
+
+        // Part 1
+        public long correctMiddleSum() {
+            return correctMiddleSum;
+        }
+
+        // Part 2
+        public long reorderedMiddleSum() {
+            return reorderedMiddleSum;
+        }
     }
 
-    private boolean topologicalSort(int page, Map<Integer, Set<Integer>> precedenceMap,
-                                    Set<Integer> visited, Set<Integer> visiting, List<Integer> sortedPages) {
-        if (visiting.contains(page)) {
-            return false; // Cycle detected
+    // =============================
+    // COMPILED RULES
+    // =============================
+    // Page IDs index a dense bit matrix: bit y of row x is set for every rule X|Y. An update is
+    // out of order exactly when some page has a required-after page earlier in the update, so
+    // one pass that keeps the pages seen so far as a bitset tests each page with a few word
+    // ANDs against its row. The bitset is scratch owned by the caller and is cleared again
+    // before returning, so validating an update allocates nothing.
+    //
+    // Reordering needs only the middle page. When the rules directly order every pair of an
+    // update's pages, the predecessor counts (one AND and popcount of each page's column
+    // against the update's member bitset) are exactly 0..size-1 and the middle page is the
+    // one with size/2. Updates ordered only through transitivity take an iterative Kahn
+    // topological sort over the same counts instead, which also catches cycles.
+
+    static class Rules {
+        // Keeps the matrix at 32 MB or less
+        static final int MAX_PAGE = 1 << 14;
+
+        // Page IDs with rules are 0..pages-1
+        final int pages;
+        final int words;
+        // after[x * words + (y >>> 6)] has bit y set for the rule X|Y
+        final long[] after;
+        // The transpose: before[y * words + (x >>> 6)] has bit x set for the rule X|Y
+        final long[] before;
+
+        private Rules(int pages) {
+            this.pages = pages;
+            this.words = Math.max(1, (pages + 63) >>> 6);
+            this.after = new long[pages * words];
+            this.before = new long[pages * words];
+        }
+
+        static Rules compile(List<int[]> pairs) {
+            int pages = 0;
+            for (int[] pair : pairs) {
+                for (int page : pair) {
+                    if (page < 0 || page >= MAX_PAGE) {
+                        throw new IllegalArgumentException("Page ID out of range: " + page);
+                    }
+                    pages = Math.max(pages, page + 1);
+                }
+            }
+
+            Rules rules = new Rules(pages);
+            for (int[] pair : pairs) {
+                rules.after[pair[0] * rules.words + (pair[1] >>> 6)] |= 1L << pair[1];
+                rules.before[pair[1] * rules.words + (pair[0] >>> 6)] |= 1L << pair[0];
+            }
+            return rules;
+        }
+
+        // A copy with room for page IDs 0..pages-1
+        Rules resized(int pages) {
+            if (pages > MAX_PAGE) {
+                throw new IllegalArgumentException("Page ID out of range: " + (pages - 1));
+            }
+            Rules rules = new Rules(pages);
+            int shared = Math.min(words, rules.words);
+            for (int x = 0; x < this.pages; x++) {
+                System.arraycopy(after, x * words, rules.after, x * rules.words, shared);
+                System.arraycopy(before, x * words, rules.before, x * rules.words, shared);
+            }
+            return rules;
+        }
+
+        // Only Incremental changes rules after compile, and only on its own copy
+        void set(int x, int y, boolean present) {
+            if (present) {
+                after[x * words + (y >>> 6)] |= 1L << y;
+                before[y * words + (x >>> 6)] |= 1L << x;
+            } else {
+                after[x * words + (y >>> 6)] &= ~(1L << y);
+                before[y * words + (x >>> 6)] &= ~(1L << x);
+            }
         }
 
-        if (!visited.contains(page)) {
-            visiting.add(page);
+        Scratch newScratch() {
+            return new Scratch(words);
+        }
 
-            if (precedenceMap.containsKey(page)) {
-                for (int dependentPage : precedenceMap.get(page)) {
-                    if (!topologicalSort(dependentPage, precedenceMap, visited, visiting, sortedPages)) {
-                        return false;
+        // Per-caller working memory, reused from one update to the next
+        static class Scratch {
+            // Pages seen so far during validation
+            final long[] seen;
+            // Pages of the update being reordered
+            final long[] members;
+            // The update's distinct pages, how many of them each one must follow, how many
+            // pages have each count, and the topological order as positions into pages
+            int[] pages = new int[64];
+            int[] counts = new int[64];
+            int[] tally = new int[64];
+            int[] order = new int[64];
+
+            Scratch(int words) {
+                this.seen = new long[words];
+                this.members = new long[words];
+            }
+
+            void ensure(int length) {
+                if (pages.length < length) {
+                    int size = Math.max(length, pages.length * 2);
+                    pages = new int[size];
+                    counts = new int[size];
+                    tally = new int[size];
+                    order = new int[size];
+                }
+            }
+        }
+
+        boolean mustPrecede(int x, int y) {
+            return x >= 0 && x < pages && y >= 0 && y < pages
+                    && (after[x * words + (y >>> 6)] & 1L << y) != 0;
+        }
+
+        // Pages no rule mentions can't break the order, so they are skipped
+        boolean isCorrectOrder(int[] update, int length, Scratch scratch) {
+            long[] seen = scratch.seen;
+            boolean correct = true;
+            int checked = 0;
+            for (; checked < length && correct; checked++) {
+                int page = update[checked];
+                if (page < 0 || page >= pages) {
+                    continue;
+                }
+                int row = page * words;
+                for (int w = 0; w < words; w++) {
+                    if ((after[row + w] & seen[w]) != 0) {
+                        correct = false;
+                        break;
                     }
                 }
+                seen[page >>> 6] |= 1L << page;
             }
 
-            visiting.remove(page);
-            visited.add(page);
-            sortedPages.add(page);
+            for (int i = 0; i < checked; i++) {
+                int page = update[i];
+                if (page >= 0 && page < pages) {
+                    seen[page >>> 6] = 0;
+                }
+            }
+            return correct;
         }
 
-        return true;
-    }
+        // The page at position size/2 once the update's distinct pages are reordered to follow
+        // the rules
+        int reorderedMiddle(int[] update, int length, Scratch scratch) {
+            scratch.ensure(length);
+            long[] members = scratch.members;
+            int[] distinct = scratch.pages;
+            int size = 0;
+            for (int i = 0; i < length; i++) {
+                int page = update[i];
+                if (page >= 0 && page < pages) {
+                    long bit = 1L << page;
+                    if ((members[page >>> 6] & bit) == 0) {
+                        members[page >>> 6] |= bit;
+                        distinct[size++] = page;
+                    }
+                } else if (indexOf(distinct, size, page) < 0) {
+                    distinct[size++] = page;
+                }
+            }
 
-    private int findMiddlePage(List<Integer> update) {
-        return update.get(update.size() / 2);
-    }
+            // The counts are a permutation of 0..size-1, with no pair ordered both ways, only
+            // when every pair is ordered directly; then the order is unique and acyclic
+            int[] counts = scratch.counts;
+            int[] tally = scratch.tally;
+            boolean total = true;
+            for (int i = 0; i < size; i++) {
+                int page = distinct[i];
+                int predecessors = 0;
+                if (page >= 0 && page < pages) {
+                    int row = page * words;
+                    for (int w = 0; w < words; w++) {
+                        long column = before[row + w] & members[w];
+                        predecessors += Long.bitCount(column);
+                        total &= (column & after[row + w]) == 0;
+                    }
+                }
+                counts[i] = predecessors;
+                if (predecessors >= size || tally[predecessors]++ != 0) {
+                    total = false;
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (counts[i] < size) {
+                    tally[counts[i]] = 0;
+                }
+            }
 
-    private static class InputData {
-        Map<Integer, Set<Integer>> precedenceMap;
-        List<List<Integer>> updates;
+            int middle = total ? distinct[indexOf(counts, size, size / 2)] : topologicalMiddle(size, scratch);
 
-        InputData(Map<Integer, Set<Integer>> precedenceMap, List<List<Integer>> updates) {
-            this.precedenceMap = precedenceMap;
-            this.updates = updates;
+            for (int i = 0; i < size; i++) {
+                int page = distinct[i];
+                if (page >= 0 && page < pages) {
+                    members[page >>> 6] = 0;
+                }
+            }
+            return middle;
+        }
+
+        // Kahn's algorithm over the distinct pages, whose counts are their in-degrees
+        private int topologicalMiddle(int size, Scratch scratch) {
+            int[] distinct = scratch.pages;
+            int[] counts = scratch.counts;
+            int[] order = scratch.order;
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < size; i++) {
+                if (counts[i] == 0) {
+                    order[tail++] = i;
+                }
+            }
+            while (head < tail) {
+                int page = distinct[order[head++]];
+                if (page < 0 || page >= pages) {
+                    continue;
+                }
+                int row = page * words;
+                for (int j = 0; j < size; j++) {
+                    int next = distinct[j];
+                    if (next >= 0 && next < pages && (after[row + (next >>> 6)] & 1L << next) != 0
+                            && --counts[j] == 0) {
+                        order[tail++] = j;
+                    }
+                }
+            }
+
+            if (tail < size) {
+                for (int i = 0; i < size; i++) {
+                    int page = distinct[i];
+                    if (page >= 0 && page < pages) {
+                        scratch.members[page >>> 6] = 0;
+                    }
+                }
+                throw new RuntimeException("Cycle detected in precedence rules!");
+            }
+            return distinct[order[size / 2]];
+        }
+
+        private static int indexOf(int[] values, int length, int value) {
+            for (int i = 0; i < length; i++) {
+                if (values[i] == value) {
+                    return i;
+                }
+            }
+            return -1;
         }
     }
 }
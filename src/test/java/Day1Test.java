@@ -0,0 +1,217 @@
+package org.aoc.days;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Day1Test {
+
+    private static final String EXAMPLE = "3   4\n" +
+            "4   3\n" +
+            "2   5\n" +
+            "1   3\n" +
+            "3   9\n" +
+            "3   3\n";
+
+    private File writeTempFile(String content) throws IOException {
+        File tempFile = File.createTempFile("day1_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(content);
+        }
+        return tempFile;
+    }
+
+    @Test
+    public void testTotalDistance() throws IOException {
+        Day1 day1 = new Day1(writeTempFile(EXAMPLE).getAbsolutePath());
+
+        assertEquals(11, day1.part1(), "The total distance between the lists should be 11.");
+    }
+
+    @Test
+    public void testSimilarityScore() throws IOException {
+        Day1 day1 = new Day1(writeTempFile(EXAMPLE).getAbsolutePath());
+
+        assertEquals(31, day1.part2(), "The similarity score should be 31.");
+    }
+
+    @Test
+    public void testSortMatchesArraysSort() {
+        Random random = new Random(1);
+
+        // Bounded IDs take the counting sort path, wide ones the radix path
+        int[] bounded = random.ints(10_000, 10_000, 99_999).toArray();
+        int[] wide = random.ints(10_000).toArray();
+
+        for (int[] values : new int[][]{bounded, wide}) {
+            int[] expected = values.clone();
+            Arrays.sort(expected);
+
+            Day1.sort(values, values.length);
+            assertArrayEquals(expected, values);
+        }
+
+        // A counting range below the value range, as the external sort passes, falls back to radix
+        int[] capped = random.ints(10_000, 10_000, 99_999).toArray();
+        int[] expected = capped.clone();
+        Arrays.sort(expected);
+        Day1.sort(capped, capped.length, 1024);
+        assertArrayEquals(expected, capped);
+    }
+
+    @Test
+    public void testSimilarityScoreMergeJoin() {
+        int[] left = {1, 2, 2, 5, 7, 7, 7};
+        int[] right = {0, 2, 2, 2, 6, 7, 9};
+
+        // 2 appears twice on the left and three times on the right, 7 three times and once
+        assertEquals(2L * 2 * 3 + 7L * 3 * 1, Day1.similarityScore(left, right, left.length));
+    }
+
+    @Test
+    public void testParserSkipsMalformedLinesAndHandlesMissingNewline() throws IOException {
+        // Blank lines, CRLF endings and lines without exactly two IDs are ignored
+        String content = "3 4\r\n\n4\t3\n7\n2   5 6\n1   3\n3   9\n3   3";
+        Day1 day1 = new Day1(writeTempFile(content).getAbsolutePath());
+
+        assertEquals(8, day1.part1());
+        assertEquals(31, day1.part2());
+    }
+
+    @Test
+    public void testParserSkipsHeadersButRejectsMalformedPairs() throws IOException {
+        // Lines with one or three tokens are skipped whatever they hold, as with split("\\s+")
+        String content = "location ids\tfor\nleft\n3   4\n4   3\n2   5\n1   3\n3   9\n3   3\n";
+        Day1 day1 = new Day1(writeTempFile(content).getAbsolutePath());
+        assertEquals(11, day1.part1());
+
+        // Two tokens make a pair, so both must be IDs
+        assertThrows(NumberFormatException.class, () -> new Day1(writeTempFile("3 4\nleft right\n").getAbsolutePath()));
+        assertThrows(NumberFormatException.class, () -> new Day1(writeTempFile("3 4\n1 2147483648\n").getAbsolutePath()));
+    }
+
+    @Test
+    public void testParserConcatenatesChunksInFileOrder() throws IOException {
+        Random random = new Random(3);
+        StringBuilder content = new StringBuilder();
+        int[] expectedLeft = new int[5_000];
+        int[] expectedRight = new int[5_000];
+        for (int i = 0; i < expectedLeft.length; i++) {
+            expectedLeft[i] = random.nextInt(100_000);
+            expectedRight[i] = random.nextInt(100_000);
+            content.append(expectedLeft[i]).append("   ").append(expectedRight[i]).append('\n');
+        }
+
+        // Small chunks force many newline-aligned boundaries
+        Day1.PairParser.Columns columns = Day1.PairParser.parse(writeTempFile(content.toString()).toPath(), 1000);
+
+        assertEquals(expectedLeft.length, columns.size);
+        assertArrayEquals(expectedLeft, Arrays.copyOf(columns.left, columns.size));
+        assertArrayEquals(expectedRight, Arrays.copyOf(columns.right, columns.size));
+    }
+
+    @Test
+    public void testIncrementalMatchesExample() throws IOException {
+        Day1.Incremental incremental = new Day1(writeTempFile(EXAMPLE).getAbsolutePath()).toIncremental();
+
+        assertEquals(11, incremental.totalDistance());
+        assertEquals(31, incremental.similarityScore());
+
+        incremental.remove(3, 9);
+        incremental.add(-5, 10);
+        assertEquals(6, incremental.size());
+        assertEquals(bruteForceDistance(new int[]{3, 4, 2, 1, -5, 3}, new int[]{4, 3, 5, 3, 10, 3}),
+                incremental.totalDistance());
+    }
+
+    @Test
+    public void testIncrementalAgainstRecomputation() {
+        Random random = new Random(7);
+        Day1.Incremental incremental = new Day1.Incremental();
+        List<int[]> pairs = new ArrayList<>();
+
+        for (int step = 0; step < 2_000; step++) {
+            if (!pairs.isEmpty() && random.nextInt(3) == 0) {
+                // Remove a left value and a right value that came from different pairs
+                int[] a = pairs.get(random.nextInt(pairs.size()));
+                int[] b = pairs.get(random.nextInt(pairs.size()));
+                incremental.remove(a[0], b[1]);
+                int right = b[1];
+                b[1] = a[1];
+                a[1] = right;
+                pairs.remove(a);
+            } else {
+                int bound = step % 2 == 0 ? 50 : Integer.MAX_VALUE;
+                pairs.add(new int[]{random.nextInt(bound) - bound / 2, random.nextInt(bound) - bound / 2});
+                int[] added = pairs.get(pairs.size() - 1);
+                incremental.add(added[0], added[1]);
+            }
+
+            int[] left = pairs.stream().mapToInt(p -> p[0]).sorted().toArray();
+            int[] right = pairs.stream().mapToInt(p -> p[1]).sorted().toArray();
+            assertEquals(bruteForceDistance(left, right), incremental.totalDistance());
+            assertEquals(Day1.similarityScore(left, right, left.length), incremental.similarityScore());
+        }
+    }
+
+    private static long bruteForceDistance(int[] left, int[] right) {
+        int[] l = left.clone();
+        int[] r = right.clone();
+        Arrays.sort(l);
+        Arrays.sort(r);
+        long total = 0;
+        for (int i = 0; i < l.length; i++) {
+            total += Math.abs((long) l[i] - r[i]);
+        }
+        return total;
+    }
+
+    @Test
+    public void testExternalSortSpillsRunsAndMatchesInMemory() throws IOException {
+        Random random = new Random(11);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            // Mix small repeated IDs with the full int range to exercise the varint deltas
+            int l = i % 3 == 0 ? random.nextInt() : random.nextInt(500);
+            int r = i % 5 == 0 ? random.nextInt() : random.nextInt(500);
+            content.append(l).append("   ").append(r).append('\n');
+        }
+        File input = writeTempFile(content.toString());
+
+        Day1 inMemory = new Day1(input.getAbsolutePath());
+        // A 64 KB budget gives runs of 2730 pairs, so the merge sees around fifteen runs
+        Day1.Answers answers = new Day1.ExternalSort(64 * 1024).solve(input.getAbsolutePath());
+
+        assertEquals(inMemory.part1(), answers.totalDistance);
+        assertEquals(inMemory.part2(), answers.similarityScore);
+    }
+
+    @Test
+    public void testExternalSortParsesAcrossReadBufferBoundaries() throws IOException {
+        Random random = new Random(23);
+        // A header longer than the smallest read buffer, then short lines that straddle refills
+        StringBuilder content = new StringBuilder("id ".repeat(3_000)).append('\n');
+        for (int i = 0; i < 5_000; i++) {
+            content.append(random.nextInt(10)).append(' ').append(random.nextInt(10)).append('\n');
+        }
+        content.append("7 8");
+        File input = writeTempFile(content.toString());
+
+        Day1 inMemory = new Day1(input.getAbsolutePath());
+        Day1.Answers answers = new Day1.ExternalSort(4096).solve(input.getAbsolutePath());
+
+        assertEquals(inMemory.part1(), answers.totalDistance);
+        assertEquals(inMemory.part2(), answers.similarityScore);
+    }
+}
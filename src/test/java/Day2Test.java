@@ -0,0 +1,195 @@
+package org.aoc.days;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Day2Test {
+
+    private static final String EXAMPLE = "7 6 4 2 1\n" +
+            "1 2 7 8 9\n" +
+            "9 7 6 2 1\n" +
+            "1 3 2 4 5\n" +
+            "8 6 4 4 1\n" +
+            "1 3 6 7 9\n";
+
+    private File writeTempFile(String content) throws IOException {
+        File tempFile = File.createTempFile("day2_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(content);
+        }
+        return tempFile;
+    }
+
+    @Test
+    public void testSafeReports() throws IOException {
+        Day2 day2 = new Day2(writeTempFile(EXAMPLE).getAbsolutePath());
+
+        assertEquals(2, day2.part1(), "Only two reports should be safe without the dampener.");
+    }
+
+    @Test
+    public void testSafeReportsWithDampener() throws IOException {
+        Day2 day2 = new Day2(writeTempFile(EXAMPLE).getAbsolutePath());
+
+        assertEquals(4, day2.part2(), "Four reports should be safe with the dampener.");
+    }
+
+    @Test
+    public void testDampenerRemovesFirstOrLastLevel() throws IOException {
+        // Removing the first level flips the direction; removing the last fixes a big jump
+        String reports = "5 1 2 3 4\n" +
+                "1 2 3 4 9\n" +
+                "3 2 3 4 5\n" +
+                "1 2 3 2 1\n";
+        Day2 day2 = new Day2(writeTempFile(reports).getAbsolutePath());
+
+        assertEquals(3, day2.part2());
+    }
+
+    @Test
+    public void testToleranceMatchesExhaustiveRemoval() throws IOException {
+        Random random = new Random(5);
+        StringBuilder reports = new StringBuilder();
+        List<int[]> parsed = new ArrayList<>();
+        for (int r = 0; r < 400; r++) {
+            int[] levels = new int[3 + random.nextInt(6)];
+            levels[0] = random.nextInt(20);
+            for (int i = 1; i < levels.length; i++) {
+                levels[i] = levels[i - 1] + random.nextInt(9) - 3;
+            }
+            parsed.add(levels);
+            for (int level : levels) {
+                reports.append(level).append(' ');
+            }
+            reports.append('\n');
+        }
+        String path = writeTempFile(reports.toString()).getAbsolutePath();
+
+        for (int k = 0; k <= 3; k++) {
+            int expected = 0;
+            for (int[] levels : parsed) {
+                if (safeAfterRemovals(levels, k)) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, new Day2(path, k).part2(), "Mismatch for tolerance " + k);
+        }
+    }
+
+    private static boolean safeAfterRemovals(int[] levels, int k) {
+        // Try every subset of removed levels with at most k members
+        for (int mask = 0; mask < 1 << levels.length; mask++) {
+            if (Integer.bitCount(mask) > k) {
+                continue;
+            }
+            boolean increasing = true;
+            boolean decreasing = true;
+            int previous = Integer.MIN_VALUE;
+            for (int i = 0; i < levels.length; i++) {
+                if ((mask & 1 << i) != 0) {
+                    continue;
+                }
+                if (previous != Integer.MIN_VALUE) {
+                    int diff = levels[i] - previous;
+                    increasing &= diff >= 1 && diff <= 3;
+                    decreasing &= diff <= -1 && diff >= -3;
+                }
+                previous = levels[i];
+            }
+            if (increasing || decreasing) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testVectorKernelMatchesScalarCheck() {
+        assertTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "The test JVM should run with the Vector API module.");
+
+        Random random = new Random(9);
+        int count = 1_003; // Not a multiple of any lane count, so the last batch is partial
+        int[] offsets = new int[count + 1];
+        int[] levels = new int[count * 12];
+        for (int r = 0; r < count; r++) {
+            int length = random.nextInt(12);
+            int direction = random.nextBoolean() ? 1 : -1;
+            for (int i = 0; i < length; i++) {
+                int step = random.nextInt(20) == 0 ? random.nextInt(9) - 4 : direction * (1 + random.nextInt(3));
+                levels[offsets[r] + i] = i == 0 ? random.nextInt(100) : levels[offsets[r] + i - 1] + step;
+            }
+            offsets[r + 1] = offsets[r] + length;
+        }
+
+        boolean[] safe = new boolean[count];
+        int safeReports = Day2.VectorKernel.markSafe(levels, offsets, count, safe);
+
+        int expected = 0;
+        for (int r = 0; r < count; r++) {
+            boolean increasing = true;
+            boolean decreasing = true;
+            for (int i = offsets[r] + 1; i < offsets[r + 1]; i++) {
+                int diff = levels[i] - levels[i - 1];
+                increasing &= diff >= 1 && diff <= 3;
+                decreasing &= diff <= -1 && diff >= -3;
+            }
+            assertEquals(increasing || decreasing, safe[r], "Mismatch for report " + r);
+            if (safe[r]) {
+                expected++;
+            }
+        }
+        assertEquals(expected, safeReports);
+    }
+
+    @Test
+    public void testReportFeedFromInputStream() throws IOException {
+        Day2.ReportFeed feed = new Day2.ReportFeed();
+        // No trailing newline, so the last report is flushed at the end of the stream
+        String reports = EXAMPLE.trim() + "\n\n1 2 3 4 5";
+
+        // Hand out three bytes per read so levels and line breaks straddle read boundaries
+        feed.consume(new ByteArrayInputStream(reports.getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        });
+
+        assertEquals(7, feed.reports());
+        assertEquals(3, feed.safeReports());
+        assertEquals(5, feed.dampenedSafeReports());
+    }
+
+    @Test
+    public void testReportFeedFromPublisher() throws Exception {
+        Day2.ReportFeed feed = new Day2.ReportFeed();
+
+        try (SubmissionPublisher<int[]> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(feed);
+            for (String line : EXAMPLE.split("\n")) {
+                publisher.submit(Arrays.stream(line.split(" ")).mapToInt(Integer::parseInt).toArray());
+            }
+        }
+
+        feed.completion().get(10, TimeUnit.SECONDS);
+        assertEquals(6, feed.reports());
+        assertEquals(2, feed.safeReports());
+        assertEquals(4, feed.dampenedSafeReports());
+    }
+}
@@ -0,0 +1,72 @@
+package org.aoc.days;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+// Compares the old Matcher.find loop with the automaton, scalar and with the SIMD prefilter,
+// on synthetic noise that carries an instruction every density bytes or so. Run after
+// `gradle testClasses` with
+//   java --add-modules jdk.incubator.vector -cp build/classes/java/main:build/classes/java/test org.aoc.days.Day3Benchmark [MB]
+public class Day3Benchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        System.out.println("Prefilter available: " + Day3.VECTOR_PREFILTER);
+
+        for (int density : new int[]{16, 256, 4096}) {
+            String input = syntheticInput(new Random(1), megabytes << 20, density);
+            byte[] bytes = input.getBytes(StandardCharsets.US_ASCII);
+            System.out.println("\n" + megabytes + " MB, one instruction per ~" + density + " bytes");
+
+            time("Matcher.find", bytes.length, () -> Day3Test.regexSums(input)[1]);
+            time("automaton", bytes.length, () -> scan(bytes, false));
+            if (Day3.VECTOR_PREFILTER) {
+                time("automaton + prefilter", bytes.length, () -> scan(bytes, true));
+            }
+        }
+    }
+
+    private static long scan(byte[] bytes, boolean prefilter) {
+        Day3.Scanner scanner = new Day3.Scanner(Day3.DEFAULT_INSTRUCTIONS);
+        scanner.prefilter = prefilter;
+        scanner.scan(ByteBuffer.wrap(bytes), 0, bytes.length);
+        return scanner.accumulator.enabledTotal();
+    }
+
+    private static void time(String name, long bytes, LongSupplier run) {
+        long result = 0;
+        long best = Long.MAX_VALUE;
+        // The first round warms up the JIT and is not counted
+        for (int round = 0; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            result = run.getAsLong();
+            long elapsed = System.nanoTime() - start;
+            if (round > 0) {
+                best = Math.min(best, elapsed);
+            }
+        }
+        System.out.printf("  %-24s %8.1f ms  %8.1f MB/s  (result %d)%n",
+                name, best / 1e6, bytes / (best / 1e9) / (1 << 20), result);
+    }
+
+    // Printable noise with the occasional stray 'm' or 'd', plus real instructions
+    private static String syntheticInput(Random random, int length, int density) {
+        String noise = "abcefghijklnopqrstuvwxyz!@#$%^&*[]{}<>?;:_+-= ";
+        String[] instructions = {"mul(12,34)", "mul(7,8)", "do()", "don't()", "mul(1,2", "mu", "dox"};
+        StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length) {
+            if (random.nextInt(density) == 0) {
+                builder.append(instructions[random.nextInt(instructions.length)]);
+            } else {
+                builder.append(noise.charAt(random.nextInt(noise.length())));
+            }
+            if (random.nextInt(80) == 0) {
+                builder.append('\n');
+            }
+        }
+        return builder.toString();
+    }
+}
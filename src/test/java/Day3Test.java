@@ -0,0 +1,224 @@
+package org.aoc.days;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class Day3Test {
+
+    private static final String PART1_EXAMPLE =
+            "xmul(2,4)%&mul[3,7]!@^do_not_mul(5,5)+mul(32,64]then(mul(11,8)mul(8,5))";
+    private static final String PART2_EXAMPLE =
+            "xmul(2,4)&mul[3,7]!^don't()_mul(5,5)+mul(32,64](mul(11,8)undo()?mul(8,5))";
+
+    private File writeTempFile(String content) throws IOException {
+        File tempFile = File.createTempFile("day3_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(content);
+        }
+        return tempFile;
+    }
+
+    @Test
+    public void testValidMultiplications() throws IOException {
+        Day3 day3 = new Day3(writeTempFile(PART1_EXAMPLE).getAbsolutePath());
+
+        assertEquals(161, day3.part1(), "The valid mul instructions should add up to 161.");
+    }
+
+    @Test
+    public void testEnabledMultiplications() throws IOException {
+        Day3 day3 = new Day3(writeTempFile(PART2_EXAMPLE).getAbsolutePath());
+
+        assertEquals(48, day3.part2(), "The enabled mul instructions should add up to 48.");
+    }
+
+    @Test
+    public void testScannerMatchesRegexOnNoisyInput() throws IOException {
+        String input = noisyInstructions(new Random(2), 20_000);
+        Day3 day3 = new Day3(writeTempFile(input).getAbsolutePath());
+
+        long[] expected = regexSums(input);
+        assertEquals(expected[0], day3.part1());
+        assertEquals(expected[1], day3.part2());
+    }
+
+    @Test
+    public void testParallelScanMatchesSequentialForAnyChunkSize() throws IOException {
+        String input = noisyInstructions(new Random(4), 3_000);
+        File file = writeTempFile(input);
+        long[] expected = regexSums(input);
+
+        // Tiny chunks put chunk boundaries inside almost every instruction
+        for (long chunkSize : new long[]{1, 2, 3, 7, 64, 1000, 1 << 20}) {
+            Day3.Accumulator result = Day3.ChunkScan.scanFile(file.toPath(), Day3.DEFAULT_INSTRUCTIONS, chunkSize);
+            assertEquals(expected[0], result.total, "Part 1 mismatch for chunk size " + chunkSize);
+            assertEquals(expected[1], result.enabledTotal, "Part 2 mismatch for chunk size " + chunkSize);
+        }
+
+        assertEquals(expected[1], new Day3(file.getAbsolutePath(), true).part2());
+    }
+
+    @Test
+    public void testStreamingScanWithSmallWindows() throws IOException {
+        // No newlines at all, the case that used to become one giant line
+        String input = noisyInstructions(new Random(6), 5_000).replace("\n", "");
+        long[] expected = regexSums(input);
+
+        for (int bufferSize : new int[]{1, 5, 4096}) {
+            Day3.Accumulator result = Day3.scan(
+                    Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII))),
+                    Day3.DEFAULT_INSTRUCTIONS, bufferSize);
+            assertEquals(expected[0], result.total(), "Part 1 mismatch for buffer size " + bufferSize);
+            assertEquals(expected[1], result.enabledTotal(), "Part 2 mismatch for buffer size " + bufferSize);
+        }
+    }
+
+    @Test
+    public void testCustomInstructionSet() throws IOException {
+        // A three-operand opcode with bounded operands, a toggle without parentheses and mul as before
+        Day3.Instruction mad = Day3.Instruction.of("mad[", Day3.Arguments.of(3, 1, 3, ';', "]"),
+                (accumulator, args) -> accumulator.mul(args[0] * args[1] + args[2]));
+        Day3.Instruction off = Day3.Instruction.of("off!", Day3.Arguments.NONE,
+                (accumulator, args) -> accumulator.setEnabled(false));
+        Day3.Instruction on = Day3.Instruction.of("on", Day3.Arguments.none("!"),
+                (accumulator, args) -> accumulator.setEnabled(true));
+        Day3.InstructionSet instructions = Day3.InstructionSet.of(Day3.MUL, mad, off, on);
+
+        Random random = new Random(8);
+        String[] pieces = {"mad[", "mad[1;2;3]", "mad[1000;2;3]", "mamad[4;5;6]", "mad[7;", "12", ";", "]",
+                "off!", "of", "on!", "oon!", "on", "!", "mul(3,4)", "mul(", "x", "\n"};
+        StringBuilder builder = new StringBuilder();
+        // Around 8 KB: with chunk size 1 every byte becomes its own fork/join task
+        for (int i = 0; i < 1_500; i++) {
+            builder.append(pieces[random.nextInt(pieces.length)]);
+        }
+        String input = builder.toString();
+
+        Pattern pattern = Pattern.compile("mad\\[(\\d{1,3});(\\d{1,3});(\\d{1,3})]|(off!)|(on!)|mul\\((\\d+),(\\d+)\\)");
+        long total = 0;
+        long enabledTotal = 0;
+        boolean enabled = true;
+        for (String line : input.split("\n")) {
+            Matcher matcher = pattern.matcher(line);
+            while (matcher.find()) {
+                long product;
+                if (matcher.group(4) != null) {
+                    enabled = false;
+                    continue;
+                } else if (matcher.group(5) != null) {
+                    enabled = true;
+                    continue;
+                } else if (matcher.group(1) != null) {
+                    product = Long.parseLong(matcher.group(1)) * Long.parseLong(matcher.group(2))
+                            + Long.parseLong(matcher.group(3));
+                } else {
+                    product = Long.parseLong(matcher.group(6)) * Long.parseLong(matcher.group(7));
+                }
+                total += product;
+                if (enabled) {
+                    enabledTotal += product;
+                }
+            }
+        }
+
+        File file = writeTempFile(input);
+        Day3 day3 = new Day3(file.getAbsolutePath(), false, instructions);
+        assertEquals(total, day3.part1());
+        assertEquals(enabledTotal, day3.part2());
+        for (long chunkSize : new long[]{1, 5, 1000}) {
+            Day3.Accumulator result = Day3.ChunkScan.scanFile(file.toPath(), instructions, chunkSize);
+            assertEquals(total, result.total(), "Part 1 mismatch for chunk size " + chunkSize);
+            assertEquals(enabledTotal, result.enabledTotal(), "Part 2 mismatch for chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    public void testOverlappingPrefixesAreRejected() {
+        Day3.Instruction dont = Day3.Instruction.of("don't", Day3.Arguments.NONE, (accumulator, args) -> { });
+        Day3.Instruction on = Day3.Instruction.of("on", Day3.Arguments.NONE, (accumulator, args) -> { });
+
+        assertThrows(IllegalArgumentException.class, () -> Day3.InstructionSet.of(dont, on));
+    }
+
+    @Test
+    public void testVectorPrefilterFindsEveryCandidate() {
+        String input = noisyInstructions(new Random(10), 2_000);
+        ByteBuffer buffer = ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII));
+        byte[] startBytes = Day3.DEFAULT_INSTRUCTIONS.startBytes;
+
+        // Every start offset, so the vector loop meets candidates in each lane and the scalar tail
+        for (int from = 0; from < buffer.limit(); from++) {
+            int expected = from;
+            while (expected < buffer.limit() && buffer.get(expected) != 'm' && buffer.get(expected) != 'd') {
+                expected++;
+            }
+            assertEquals(expected, Day3.VectorPrefilter.nextCandidate(buffer, from, buffer.limit(), startBytes));
+        }
+    }
+
+    @Test
+    public void testPrefilteredScanMatchesScalarScan() {
+        String input = noisyInstructions(new Random(12), 20_000);
+        ByteBuffer buffer = ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII));
+
+        Day3.Scanner scalar = new Day3.Scanner(Day3.DEFAULT_INSTRUCTIONS);
+        scalar.prefilter = false;
+        scalar.scan(buffer, 0, buffer.limit());
+        Day3.Scanner filtered = new Day3.Scanner(Day3.DEFAULT_INSTRUCTIONS);
+        filtered.prefilter = true;
+        filtered.scan(buffer, 0, buffer.limit());
+
+        assertEquals(scalar.accumulator.total(), filtered.accumulator.total());
+        assertEquals(scalar.accumulator.enabledTotal(), filtered.accumulator.enabledTotal());
+    }
+
+    // Fragments that overlap and break off mid-instruction, joined at random
+    static String noisyInstructions(Random random, int fragments) {
+        String[] pieces = {"mul(", "mul(12,3)", "mmul(4,5)", "mul(7,", "mu", "l(", "do()", "don't()", "don",
+                "'t()", "do(", ")", ",", "12", "999", "mul(1,2", "x", "\n", "mul (2,3)", "dodon't()", "mul(6,9)"};
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fragments; i++) {
+            builder.append(pieces[random.nextInt(pieces.length)]);
+        }
+        return builder.toString();
+    }
+
+    // The original Matcher-based implementation, line by line
+    static long[] regexSums(String input) {
+        Pattern instructionPattern = Pattern.compile("(do\\(\\))|(don't\\(\\))|mul\\((\\d+),(\\d+)\\)");
+        long total = 0;
+        long enabledTotal = 0;
+        boolean enabled = true;
+        for (String line : input.split("\n")) {
+            Matcher matcher = instructionPattern.matcher(line);
+            while (matcher.find()) {
+                if (matcher.group(1) != null) {
+                    enabled = true;
+                } else if (matcher.group(2) != null) {
+                    enabled = false;
+                } else {
+                    long product = Long.parseLong(matcher.group(3)) * Long.parseLong(matcher.group(4));
+                    total += product;
+                    if (enabled) {
+                        enabledTotal += product;
+                    }
+                }
+            }
+        }
+        return new long[]{total, enabledTotal};
+    }
+}
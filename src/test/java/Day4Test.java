@@ -1,9 +1,17 @@
 package org.aoc.days;
 
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -71,4 +79,227 @@ public class Day4Test {
         assertEquals(9, occurrences, "The X-MAS pattern should appear 9 times in the given grid.");
     }
 
+    @Test
+    public void testBitboardMatchesCellByCellSearch() {
+        // 150 columns, so matches cross the 64-bit word boundaries in both directions
+        char[][] grid = randomGrid(new Random(5), 40, 150, "XMAS");
+        Day4.Bitboard board = Day4.Bitboard.parse(toBytes(grid));
+
+        for (String word : new String[]{"XMAS", "SAMX", "MM", "A", "XMASXMASXMASXMASXMASXMASXMASXMASXMASXMASXMASXMASXMASXMASXMASXMAS", "XQ"}) {
+            for (int[] direction : Day4.DIRECTIONS) {
+                assertEquals(bruteForceCount(grid, word, direction[0], direction[1]),
+                        board.count(word, direction[0], direction[1]),
+                        word + " in direction " + direction[0] + "," + direction[1]);
+            }
+        }
+    }
+
+    @Test
+    public void testBitboardXMASMatchesCellByCellSearch() {
+        char[][] grid = randomGrid(new Random(9), 70, 130, "MAS");
+        Day4.Bitboard board = Day4.Bitboard.parse(toBytes(grid));
+
+        int expected = 0;
+        for (int r = 1; r < grid.length - 1; r++) {
+            for (int c = 1; c < grid[r].length - 1; c++) {
+                String falling = "" + grid[r - 1][c - 1] + grid[r][c] + grid[r + 1][c + 1];
+                String rising = "" + grid[r + 1][c - 1] + grid[r][c] + grid[r - 1][c + 1];
+                if ((falling.equals("MAS") || falling.equals("SAM")) && (rising.equals("MAS") || rising.equals("SAM"))) {
+                    expected++;
+                }
+            }
+        }
+
+        assertEquals(4, Day4.X_MAS.orientations());
+        assertEquals(expected, board.count(Day4.X_MAS));
+    }
+
+    @Test
+    public void testWordSearchCountsEveryWordInOnePass() throws IOException {
+        // Ragged rows, so some columns and diagonals break off early
+        char[][] grid = randomGrid(new Random(13), 60, 90, "XMASE");
+        grid[7] = Arrays.copyOf(grid[7], 40);
+        grid[30] = new char[0];
+        File tempFile = File.createTempFile("day4_test_words", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(new String(toBytes(grid), StandardCharsets.US_ASCII));
+        }
+
+        // Overlapping words, a word and its reversal, palindromes, a single letter and a miss
+        List<String> words = List.of("XMAS", "SAMX", "MAS", "AMA", "SES", "E", "MASSAM", "XMASEX", "Q");
+        Map<String, Long> counts = new Day4(tempFile.getAbsolutePath()).countWords(words);
+
+        for (String word : words) {
+            long expected = 0;
+            for (int[] direction : Day4.DIRECTIONS) {
+                expected += bruteForceCount(grid, word, direction[0], direction[1]);
+            }
+            assertEquals(expected, counts.get(word), word);
+        }
+    }
+
+    @Test
+    public void testParallelBandsMatchSingleBoard() {
+        char[][] grid = randomGrid(new Random(17), 101, 70, "XMAS");
+        byte[][] rows = Day4.readRows(toBytes(grid));
+        Day4.Bitboard board = Day4.Bitboard.of(rows);
+
+        // Bands down to a single row, so nearly every match crosses a band boundary
+        for (int bandRows : new int[]{1, 2, 3, 7, 50, 1000}) {
+            for (String word : new String[]{"XMAS", "MAS", "X", "XMASXMAS"}) {
+                long[] counts = Day4.BandSearch.count(rows, word, Day4.X_MAS, bandRows);
+                assertEquals(board.count(word), counts[0], word + " with bands of " + bandRows);
+                assertEquals(board.count(Day4.X_MAS), counts[1], "X-MAS with bands of " + bandRows);
+            }
+        }
+    }
+
+    @Test
+    public void testRowStreamMatchesWholeGrid() throws IOException {
+        char[][] grid = randomGrid(new Random(19), 80, 75, "XMAS");
+        grid[11] = Arrays.copyOf(grid[11], 30);
+        byte[] bytes = new String(toBytes(grid), StandardCharsets.US_ASCII).replace("\n", "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+
+        for (String word : new String[]{"XMAS", "SAS", "M", "XMASXMAS"}) {
+            // Small reads, so rows arrive split across several of them
+            InputStream in = new ByteArrayInputStream(bytes) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    return super.read(b, off, Math.min(len, 7));
+                }
+            };
+            Day4.RowStream stream = Day4.RowStream.consume(in, word);
+
+            long expected = 0;
+            for (int[] direction : Day4.DIRECTIONS) {
+                expected += bruteForceCount(grid, word, direction[0], direction[1]);
+            }
+            assertEquals(expected, stream.occurrences(), word);
+            Day4.Bitboard board = Day4.Bitboard.of(Day4.readRows(bytes));
+            assertEquals(board.count(Day4.X_MAS), stream.xmas());
+        }
+    }
+
+    @Test
+    public void testStencilOrientationsMatchCellByCellSearch() throws IOException {
+        char[][] grid = randomGrid(new Random(23), 50, 100, "XMAS");
+        File tempFile = File.createTempFile("day4_test_stencil", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(new String(toBytes(grid), StandardCharsets.US_ASCII));
+        }
+
+        // An L with a gap: no symmetry, so all eight orientations are distinct
+        String[] shape = {"XM", ".A", "", "S.S"};
+        Day4.Stencil stencil = Day4.Stencil.of(shape).withRotations().withReflections();
+        assertEquals(8, stencil.orientations());
+        assertEquals(4, Day4.Stencil.of(shape).withRotations().orientations());
+        assertEquals(1, Day4.Stencil.of("A.A", "...", "A.A").withRotations().withReflections().orientations());
+
+        // The eight symmetries of the square, applied to the shape as a character grid
+        Map<String, char[][]> orientations = new HashMap<>();
+        char[][] current = padded(shape);
+        for (int turn = 0; turn < 4; turn++) {
+            orientations.put(Arrays.deepToString(current), current);
+            orientations.put(Arrays.deepToString(mirrored(current)), mirrored(current));
+            current = rotated(current);
+        }
+        long expected = 0;
+        for (char[][] orientation : orientations.values()) {
+            expected += bruteForceStencil(grid, orientation);
+        }
+
+        assertEquals(expected, new Day4(tempFile.getAbsolutePath()).countStencil(stencil));
+        Day4.Bitboard board = Day4.Bitboard.of(Day4.readRows(toBytes(grid)));
+        assertEquals(expected, Day4.BandSearch.count(Day4.readRows(toBytes(grid)), null, stencil, 3)[1]);
+        assertEquals(expected, board.count(stencil));
+    }
+
+    private static char[][] padded(String[] rows) {
+        int width = Arrays.stream(rows).mapToInt(String::length).max().orElse(0);
+        char[][] grid = new char[rows.length][width];
+        for (int r = 0; r < rows.length; r++) {
+            Arrays.fill(grid[r], '.');
+            rows[r].getChars(0, rows[r].length(), grid[r], 0);
+        }
+        return grid;
+    }
+
+    private static char[][] rotated(char[][] grid) {
+        char[][] result = new char[grid[0].length][grid.length];
+        for (int r = 0; r < grid.length; r++) {
+            for (int c = 0; c < grid[0].length; c++) {
+                result[c][grid.length - 1 - r] = grid[r][c];
+            }
+        }
+        return result;
+    }
+
+    private static char[][] mirrored(char[][] grid) {
+        char[][] result = new char[grid.length][];
+        for (int r = 0; r < grid.length; r++) {
+            result[r] = new StringBuilder(new String(grid[r])).reverse().toString().toCharArray();
+        }
+        return result;
+    }
+
+    // Every placement of the whole pattern inside the grid whose letters all match
+    private static long bruteForceStencil(char[][] grid, char[][] pattern) {
+        long count = 0;
+        for (int r = 0; r + pattern.length <= grid.length; r++) {
+            for (int c = 0; c + pattern[0].length <= grid[r].length; c++) {
+                boolean match = true;
+                for (int pr = 0; pr < pattern.length && match; pr++) {
+                    for (int pc = 0; pc < pattern[pr].length && match; pc++) {
+                        match = pattern[pr][pc] == '.' || grid[r + pr][c + pc] == pattern[pr][pc];
+                    }
+                }
+                if (match) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    static char[][] randomGrid(Random random, int rows, int cols, String letters) {
+        char[][] grid = new char[rows][cols];
+        for (char[] row : grid) {
+            for (int c = 0; c < cols; c++) {
+                row[c] = letters.charAt(random.nextInt(letters.length()));
+            }
+        }
+        return grid;
+    }
+
+    static byte[] toBytes(char[][] grid) {
+        StringBuilder builder = new StringBuilder();
+        for (char[] row : grid) {
+            builder.append(row).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // The original probe: walk the word from every cell in one direction
+    static long bruteForceCount(char[][] grid, String word, int dr, int dc) {
+        long count = 0;
+        for (int r = 0; r < grid.length; r++) {
+            for (int c = 0; c < grid[r].length; c++) {
+                int nr = r, nc = c, i = 0;
+                while (i < word.length() && nr >= 0 && nr < grid.length && nc >= 0 && nc < grid[nr].length
+                        && grid[nr][nc] == word.charAt(i)) {
+                    nr += dr;
+                    nc += dc;
+                    i++;
+                }
+                if (i == word.length()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
 }
\ No newline at end of file
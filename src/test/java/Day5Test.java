@@ -1,11 +1,26 @@
 package org.aoc.days;
 
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Day5Test {
 
@@ -96,4 +111,342 @@ public class Day5Test {
         Day5 day5 = new Day5(tempFile.getAbsolutePath());
         day5.part2(); // Should print "Sum of middle pages after reordering: 123"
     }
+
+    @Test
+    public void testBitMatrixValidationMatchesPairwiseCheck() {
+        Random random = new Random(3);
+        // Pages up to 150, so rows span three words
+        List<int[]> pairs = randomRules(random, 150, 3_000);
+        Day5.Rules rules = Day5.Rules.compile(pairs);
+        Day5.Rules.Scratch scratch = rules.newScratch();
+
+        for (int n = 0; n < 2_000; n++) {
+            // Short updates are often in order; some pages have no rules at all
+            int[] update = random.ints(1 + random.nextInt(n % 2 == 0 ? 4 : 20), 0, 170).toArray();
+            boolean expected = true;
+            for (int i = 0; i < update.length; i++) {
+                for (int j = i + 1; j < update.length; j++) {
+                    if (rules.mustPrecede(update[j], update[i])) {
+                        expected = false;
+                    }
+                }
+            }
+            assertEquals(expected, rules.isCorrectOrder(update, update.length, scratch));
+            // The scratch bitset is handed back clean
+            assertArrayEquals(new long[rules.words], scratch.seen);
+        }
+    }
+
+    @Test
+    public void testMiddleSelectionMatchesFullSort() {
+        Random random = new Random(5);
+        int pages = 90;
+        // Rules for every pair, so each update has exactly one valid order
+        int[] rank = random.ints(pages).toArray();
+        List<int[]> pairs = new ArrayList<>();
+        for (int x = 0; x < pages; x++) {
+            for (int y = 0; y < pages; y++) {
+                if (rank[x] < rank[y]) {
+                    pairs.add(new int[]{x, y});
+                }
+            }
+        }
+        Day5.Rules rules = Day5.Rules.compile(pairs);
+        Day5.Rules.Scratch scratch = rules.newScratch();
+
+        for (int n = 0; n < 1_000; n++) {
+            int[] update = random.ints(0, pages).distinct().limit(1 + random.nextInt(30)).toArray();
+            int[] sorted = Arrays.stream(update).boxed().sorted(Comparator.comparingInt(page -> rank[page]))
+                    .mapToInt(Integer::intValue).toArray();
+            int expected = sorted[sorted.length / 2];
+
+            assertEquals(expected, rules.reorderedMiddle(update, update.length, scratch));
+            assertArrayEquals(new long[rules.words], scratch.members);
+        }
+    }
+
+    @Test
+    public void testMiddleSelectionFollowsChainRules() {
+        // Only neighbours in the chain have rules, so an update holding a stretch of it is
+        // ordered only through transitivity: 18 before 14 before 12, with no rule 18|12
+        int[] chain = {16, 19, 17, 18, 14, 12, 10, 13, 11, 15};
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i + 1 < chain.length; i++) {
+            pairs.add(new int[]{chain[i], chain[i + 1]});
+        }
+        Day5.Rules rules = Day5.Rules.compile(pairs);
+        Day5.Rules.Scratch scratch = rules.newScratch();
+        assertEquals(14, rules.reorderedMiddle(new int[]{12, 18, 14}, 3, scratch));
+
+        Random random = new Random(17);
+        int pages = 90;
+        List<Integer> order = new ArrayList<>();
+        random.ints(0, pages).distinct().limit(pages).forEach(order::add);
+        pairs = new ArrayList<>();
+        for (int i = 0; i + 1 < pages; i++) {
+            pairs.add(new int[]{order.get(i), order.get(i + 1)});
+        }
+        rules = Day5.Rules.compile(pairs);
+        scratch = rules.newScratch();
+        for (int n = 0; n < 1_000; n++) {
+            int length = 1 + 2 * random.nextInt(15);
+            int start = random.nextInt(pages - length + 1);
+            List<Integer> stretch = new ArrayList<>(order.subList(start, start + length));
+            Collections.shuffle(stretch, random);
+            int[] update = stretch.stream().mapToInt(Integer::intValue).toArray();
+            List<Integer> sorted = topologicalSort(update, pairs);
+            assertEquals(sorted.get(sorted.size() / 2), rules.reorderedMiddle(update, update.length, scratch));
+            assertArrayEquals(new long[rules.words], scratch.members);
+        }
+    }
+
+    @Test
+    public void testMiddleSelectionRejectsCyclicRules() {
+        Day5.Rules rules = Day5.Rules.compile(List.of(new int[]{1, 2}, new int[]{2, 3}, new int[]{3, 1}));
+        Day5.Rules.Scratch scratch = rules.newScratch();
+
+        assertThrows(RuntimeException.class, () -> rules.reorderedMiddle(new int[]{3, 2, 1}, 3, scratch));
+        // The scratch is left clean for the next update
+        assertArrayEquals(new long[rules.words], scratch.members);
+        assertEquals(2, rules.reorderedMiddle(new int[]{2, 1}, 2, scratch));
+    }
+
+    // Depth-first topological sort over the rules among the update's pages, as the
+    // original solution did it
+    private static List<Integer> topologicalSort(int[] update, List<int[]> pairs) {
+        Set<Integer> members = new HashSet<>();
+        for (int page : update) {
+            members.add(page);
+        }
+        List<Integer> sorted = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        for (int page : update) {
+            visit(page, members, pairs, visited, sorted);
+        }
+        Collections.reverse(sorted);
+        return sorted;
+    }
+
+    private static void visit(int page, Set<Integer> members, List<int[]> pairs, Set<Integer> visited, List<Integer> sorted) {
+        if (!visited.add(page)) {
+            return;
+        }
+        for (int[] pair : pairs) {
+            if (pair[0] == page && members.contains(pair[1])) {
+                visit(pair[1], members, pairs, visited, sorted);
+            }
+        }
+        sorted.add(page);
+    }
+
+    @Test
+    public void testParallelScanMatchesSequential() throws IOException {
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder();
+        for (int[] pair : randomRules(random, 99, 4_000)) {
+            content.append(pair[0]).append('|').append(pair[1]).append('\n');
+        }
+        content.append('\n');
+        for (int n = 0; n < 5_000; n++) {
+            int[] update = random.ints(0, 99).distinct().limit(1 + 2 * random.nextInt(12)).toArray();
+            content.append(Arrays.stream(update).mapToObj(String::valueOf).collect(Collectors.joining(","))).append('\n');
+        }
+        File tempFile = File.createTempFile("day5_parallel_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(content.toString());
+        }
+
+        Day5.Answers sequential = new Day5(tempFile.getAbsolutePath()).solve();
+        Day5.Answers parallel = new Day5(tempFile.getAbsolutePath(), true).solve();
+        assertEquals(sequential.correctMiddleSum, parallel.correctMiddleSum);
+        assertEquals(sequential.reorderedMiddleSum, parallel.reorderedMiddleSum);
+    }
+
+    @Test
+    public void testIncrementalAgainstRecomputation() throws IOException {
+        Random random = new Random(11);
+        // One ranking for the initial rules and every added one, so no change closes a cycle
+        int[] rank = random.ints(80).toArray();
+        List<int[]> pairs = new ArrayList<>();
+        while (pairs.size() < 800) {
+            int x = random.nextInt(60);
+            int y = random.nextInt(60);
+            if (rank[x] < rank[y]) {
+                pairs.add(new int[]{x, y});
+            }
+        }
+        List<int[]> updates = new ArrayList<>();
+        for (int n = 0; n < 300; n++) {
+            updates.add(random.ints(0, 60).distinct().limit(1 + 2 * random.nextInt(8)).toArray());
+        }
+        File tempFile = File.createTempFile("day5_incremental_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            for (int[] pair : pairs) {
+                writer.write(pair[0] + "|" + pair[1] + "\n");
+            }
+            writer.write("\n");
+            for (int[] update : updates) {
+                writer.write(Arrays.stream(update).mapToObj(String::valueOf).collect(Collectors.joining(",")) + "\n");
+            }
+        }
+
+        Day5.Incremental incremental = new Day5(tempFile.getAbsolutePath()).toIncremental();
+        Set<List<Integer>> current = new HashSet<>();
+        for (int[] pair : pairs) {
+            current.add(List.of(pair[0], pair[1]));
+        }
+
+        for (int step = 0; step < 400; step++) {
+            if (!current.isEmpty() && random.nextBoolean()) {
+                List<Integer> rule = new ArrayList<>(current).get(random.nextInt(current.size()));
+                incremental.removeRule(rule.get(0), rule.get(1));
+                current.remove(rule);
+            } else {
+                // A few additions use new pages
+                int x = random.nextInt(step % 50 == 0 ? 80 : 60);
+                int y = random.nextInt(60);
+                if (x == y) {
+                    continue;
+                }
+                if (rank[x] > rank[y]) {
+                    int page = x;
+                    x = y;
+                    y = page;
+                }
+                incremental.addRule(x, y);
+                current.add(List.of(x, y));
+            }
+
+            List<int[]> rules = new ArrayList<>();
+            for (List<Integer> rule : current) {
+                rules.add(new int[]{rule.get(0), rule.get(1)});
+            }
+            Day5.Rules compiled = Day5.Rules.compile(rules);
+            long[] expected = Day5.UpdateScan.scan(compiled, updates, 0, updates.size(), compiled.newScratch());
+            assertEquals(expected[0], incremental.correctMiddleSum(), "Part 1 after step " + step);
+            assertEquals(expected[1], incremental.reorderedMiddleSum(), "Part 2 after step " + step);
+        }
+    }
+
+    @Test
+    public void testIncrementalGrowsPastEveryPage() throws IOException {
+        File tempFile = File.createTempFile("day5_incremental_growth_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            // Pages 200 and 20000 appear only in updates, the latter beyond the rule matrix limit
+            writer.write("3|7\n7|9\n\n3,7,9\n9,7,3\n3,200,9,20000,7\n");
+        }
+        List<int[]> updates = List.of(new int[]{3, 7, 9}, new int[]{9, 7, 3}, new int[]{3, 200, 9, 20000, 7});
+        List<int[]> rules = new ArrayList<>(List.of(new int[]{3, 7}, new int[]{7, 9}));
+
+        Day5.Incremental incremental = new Day5(tempFile.getAbsolutePath()).toIncremental();
+        // A page well past the current rows widens the scratch bitsets too
+        incremental.addRule(5000, 6000);
+        rules.add(new int[]{5000, 6000});
+        incremental.removeRule(3, 7);
+        rules.removeIf(rule -> rule[0] == 3 && rule[1] == 7);
+        // A new rule on a page only the updates mentioned so far
+        incremental.addRule(200, 3);
+        rules.add(new int[]{200, 3});
+
+        Day5.Rules compiled = Day5.Rules.compile(rules);
+        long[] expected = Day5.UpdateScan.scan(compiled, updates, 0, updates.size(), compiled.newScratch());
+        assertEquals(expected[0], incremental.correctMiddleSum());
+        assertEquals(expected[1], incremental.reorderedMiddleSum());
+
+        // 9|7 closes a cycle with 7|9 in the last update, so it is rejected and rolled back
+        assertThrows(RuntimeException.class, () -> incremental.addRule(9, 7));
+        assertEquals(expected[0], incremental.correctMiddleSum());
+        assertEquals(expected[1], incremental.reorderedMiddleSum());
+        incremental.removeRule(7, 9);
+    }
+
+    @Test
+    public void testStreamingMatchesParsedInput() throws IOException {
+        Random random = new Random(13);
+        StringBuilder content = new StringBuilder();
+        for (int[] pair : randomRules(random, 99, 2_000)) {
+            content.append(pair[0]).append('|').append(pair[1]).append("\r\n");
+        }
+        content.append("\r\n");
+        for (int n = 0; n < 2_000; n++) {
+            int[] update = random.ints(0, 99).distinct().limit(1 + 2 * random.nextInt(40)).toArray();
+            content.append(Arrays.stream(update).mapToObj(String::valueOf).collect(Collectors.joining(","))).append("\r\n");
+        }
+        // No newline after the last update
+        content.append("12,34,56");
+        File tempFile = File.createTempFile("day5_stream_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(content.toString());
+        }
+
+        // Reads of a few bytes split numbers and lines across buffer refills
+        InputStream in = new ByteArrayInputStream(content.toString().getBytes(StandardCharsets.US_ASCII)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 5));
+            }
+        };
+        Day5.Answers streamed = Day5.stream(in);
+        Day5.Answers parsed = new Day5(tempFile.getAbsolutePath(), true).solve();
+        assertEquals(parsed.correctMiddleSum, streamed.correctMiddleSum);
+        assertEquals(parsed.reorderedMiddleSum, streamed.reorderedMiddleSum);
+    }
+
+    @Test
+    public void testStreamingRejectsMalformedInput() {
+        // Past 2^32 the value would otherwise wrap around to a small page number
+        NumberFormatException overflow = assertThrows(NumberFormatException.class,
+                () -> Day5.stream(stream("1|2\n\n1,4294967298,2\n")));
+        assertTrue(overflow.getMessage().endsWith("at byte 16"), overflow.getMessage());
+        NumberFormatException stray = assertThrows(NumberFormatException.class,
+                () -> Day5.stream(stream("1|2\n\n1, 2\n")));
+        assertTrue(stray.getMessage().endsWith("at byte 8"), stray.getMessage());
+        // Without the blank line the first update is read as a rule, and rejected like parseInputData does
+        NumberFormatException separator = assertThrows(NumberFormatException.class,
+                () -> Day5.stream(stream("1|2\n2|3\n1,2,3\n3,2,1\n")));
+        assertTrue(separator.getMessage().endsWith("at byte 9"), separator.getMessage());
+        assertThrows(NumberFormatException.class, () -> Day5.stream(stream("1|2\n12\n\n1,2,3\n")));
+    }
+
+    @Test
+    public void testStreamingTrimsLinesLikeParsedInput() throws IOException {
+        String content = "1|2\n 2|3\t\r\n\n2,1,3 \n\t1,3,2\r\n3,2,1\n";
+        File tempFile = File.createTempFile("day5_stream_trim_test", ".txt");
+        tempFile.deleteOnExit();
+        try (FileWriter writer = new FileWriter(tempFile)) {
+            writer.write(content);
+        }
+
+        Day5.Answers streamed = Day5.stream(stream(content));
+        Day5.Answers parsed = new Day5(tempFile.getAbsolutePath(), true).solve();
+        assertEquals(parsed.correctMiddleSum, streamed.correctMiddleSum);
+        assertEquals(parsed.reorderedMiddleSum, streamed.reorderedMiddleSum);
+        // Every update is out of order and reorders to 1,2,3
+        assertEquals(6, streamed.reorderedMiddleSum);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Rules that follow a hidden random order, so every update has a valid ordering
+    static List<int[]> randomRules(Random random, int pages, int count) {
+        int[] rank = new int[pages];
+        for (int i = 0; i < pages; i++) {
+            rank[i] = random.nextInt();
+        }
+        List<int[]> pairs = new ArrayList<>();
+        while (pairs.size() < count) {
+            int x = random.nextInt(pages);
+            int y = random.nextInt(pages);
+            if (rank[x] < rank[y]) {
+                pairs.add(new int[]{x, y});
+            }
+        }
+        return pairs;
+    }
 }